@@ -0,0 +1,41 @@
+package se.jensen.johanna.socialapp.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.availability.ApplicationAvailability;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import se.jensen.johanna.socialapp.exception.ServiceBusyException;
+
+/**
+ * Rejects API requests with 503 and Retry-After until the application is ready for traffic.
+ * <p>
+ * Tomcat accepts connections before the {@code ApplicationRunner}s have run, but the schema migrations
+ * and the in-memory indexes such as the friend graph are only complete once they have. Spring Boot reports
+ * readiness only after all runners finished, which is also what {@code /actuator/health/readiness} exposes
+ * to load balancers. Actuator endpoints are not affected.
+ */
+@Configuration
+@RequiredArgsConstructor
+public class ReadinessConfig implements WebMvcConfigurer {
+    private static final long RETRY_AFTER_SECONDS = 5;
+
+    private final ApplicationAvailability applicationAvailability;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new HandlerInterceptor() {
+            @Override
+            public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+                if (applicationAvailability.getReadinessState() != ReadinessState.ACCEPTING_TRAFFIC) {
+                    throw new ServiceBusyException("The server is starting. Please try again shortly.", RETRY_AFTER_SECONDS);
+                }
+                return true;
+            }
+        });
+    }
+}
@@ -0,0 +1,12 @@
+package se.jensen.johanna.socialapp.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Enables {@code @Scheduled} background jobs, such as the purge of expired refresh tokens.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
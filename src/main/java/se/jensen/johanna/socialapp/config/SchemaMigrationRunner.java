@@ -0,0 +1,213 @@
+package se.jensen.johanna.socialapp.config;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * Runs the data migrations that {@code spring.jpa.hibernate.ddl-auto=update} cannot do by itself,
+ * such as backfilling new columns for existing rows and creating PostgreSQL-specific indexes.
+ * Every step is idempotent and only touches rows that have not been migrated yet.
+ * Runs before other runners so in-memory indexes load from migrated data.
+ */
+@Slf4j
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@RequiredArgsConstructor
+public class SchemaMigrationRunner implements ApplicationRunner {
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${app.feed.backfill-limit:200}")
+    private int feedBackfillLimit = 200;
+
+    @Override
+    @Transactional
+    public void run(ApplicationArguments args) {
+        backfillCommentPaths();
+        backfillFriendshipPairs();
+        backfillTimelines();
+        createUserSearchIndexes();
+        hashRefreshTokens();
+        uniqueRefreshTokenPerDevice();
+    }
+
+    /**
+     * Fills path, root_id and depth for comments created before the materialized path existed,
+     * and adds a pattern index so prefix searches on path can use an index regardless of collation.
+     */
+    private void backfillCommentPaths() {
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_comments_path ON comments (path varchar_pattern_ops)");
+        if (!needsMigration("SELECT EXISTS (SELECT 1 FROM comments WHERE path IS NULL)")) {
+            return;
+        }
+        int updated = jdbcTemplate.update("""
+                WITH RECURSIVE tree (comment_id, root_id, path, depth) AS (
+                    SELECT comment_id, CAST(NULL AS BIGINT), CAST('/' AS VARCHAR(2000)), 0
+                    FROM comments WHERE parent_id IS NULL
+                    UNION ALL
+                    SELECT c.comment_id, COALESCE(t.root_id, t.comment_id),
+                           CAST(t.path || t.comment_id || '/' AS VARCHAR(2000)), t.depth + 1
+                    FROM comments c JOIN tree t ON c.parent_id = t.comment_id
+                )
+                UPDATE comments c SET root_id = t.root_id, path = t.path, depth = t.depth
+                FROM tree t
+                WHERE c.comment_id = t.comment_id AND c.path IS NULL
+                """);
+        log.info("Backfilled materialized path for {} comments", updated);
+    }
+
+    /**
+     * Fills the canonical user pair for friendships created before it existed.
+     * Rows that duplicate a pair in either direction are removed first, keeping an accepted row
+     * over a pending one and otherwise the oldest, so the unique index on the pair can be created.
+     */
+    private void backfillFriendshipPairs() {
+        if (needsMigration("SELECT EXISTS (SELECT 1 FROM friendships WHERE low_user_id IS NULL)")) {
+            int removed = jdbcTemplate.update("""
+                    DELETE FROM friendships WHERE friendship_id IN (
+                        SELECT friendship_id FROM (
+                            SELECT friendship_id, ROW_NUMBER() OVER (
+                                PARTITION BY LEAST(sender_id, receiver_id), GREATEST(sender_id, receiver_id)
+                                ORDER BY CASE WHEN status = 'ACCEPTED' THEN 0 ELSE 1 END, friendship_id) AS rn
+                            FROM friendships
+                        ) ranked WHERE rn > 1
+                    )
+                    """);
+            int updated = jdbcTemplate.update("""
+                    UPDATE friendships
+                    SET low_user_id = LEAST(sender_id, receiver_id), high_user_id = GREATEST(sender_id, receiver_id)
+                    WHERE low_user_id IS NULL
+                    """);
+            log.info("Backfilled canonical pair for {} friendships, removed {} duplicates", updated, removed);
+        }
+        jdbcTemplate.execute("CREATE UNIQUE INDEX IF NOT EXISTS uk_friendships_pair ON friendships (low_user_id, high_user_id)");
+    }
+
+    /**
+     * Fills the timelines for posts written before fan-out-on-write existed. Every post created since
+     * has an entry in its author's own timeline, so posts without one are the ones to backfill.
+     * Each author gets all their own posts back, and their accepted friends get the newest
+     * app.feed.backfill-limit of them, the same cap as when a friendship is accepted.
+     */
+    private void backfillTimelines() {
+        if (!needsMigration("""
+                SELECT EXISTS (SELECT 1 FROM posts p WHERE NOT EXISTS
+                    (SELECT 1 FROM timeline_entries t WHERE t.post_id = p.post_id AND t.owner_id = p.user_id))
+                """)) {
+            return;
+        }
+        int written = jdbcTemplate.update("""
+                WITH missing AS (
+                    SELECT p.post_id, p.user_id, p.created_at,
+                           ROW_NUMBER() OVER (PARTITION BY p.user_id ORDER BY p.created_at DESC, p.post_id DESC) AS rn
+                    FROM posts p
+                    WHERE NOT EXISTS (SELECT 1 FROM timeline_entries t WHERE t.post_id = p.post_id AND t.owner_id = p.user_id)
+                )
+                INSERT INTO timeline_entries (owner_id, post_id, created_at)
+                SELECT m.user_id, m.post_id, m.created_at FROM missing m
+                UNION ALL
+                SELECT f.high_user_id, m.post_id, m.created_at FROM missing m
+                JOIN friendships f ON f.low_user_id = m.user_id AND f.status = 'ACCEPTED'
+                WHERE m.rn <= ?
+                UNION ALL
+                SELECT f.low_user_id, m.post_id, m.created_at FROM missing m
+                JOIN friendships f ON f.high_user_id = m.user_id AND f.status = 'ACCEPTED'
+                WHERE m.rn <= ?
+                ON CONFLICT (owner_id, post_id) DO NOTHING
+                """, feedBackfillLimit, feedBackfillLimit);
+        log.info("Backfilled {} timeline entries for posts created before timelines existed", written);
+    }
+
+    /**
+     * Adds the indexes behind user search: a trigram GIN index on lower(username) for substring matches
+     * and a pattern btree index for prefix matches. The trigram index is skipped with a warning
+     * if the pg_trgm extension is not available on the server or the role may not create it.
+     */
+    private void createUserSearchIndexes() {
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_users_username_prefix ON users (lower(username) text_pattern_ops)");
+        if (!needsMigration("SELECT EXISTS (SELECT 1 FROM pg_extension WHERE extname = 'pg_trgm')") && !createTrigramExtension()) {
+            return;
+        }
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_users_username_trgm ON users USING gin (lower(username) gin_trgm_ops)");
+    }
+
+    /**
+     * Creates pg_trgm inside a savepoint, so a failure such as a missing privilege only rolls back
+     * this statement instead of aborting the whole migration transaction.
+     *
+     * @return true if the extension was created
+     */
+    private boolean createTrigramExtension() {
+        if (!needsMigration("SELECT EXISTS (SELECT 1 FROM pg_available_extensions WHERE name = 'pg_trgm')")) {
+            log.warn("pg_trgm is not available, user substring search will not use an index");
+            return false;
+        }
+        jdbcTemplate.execute("SAVEPOINT create_pg_trgm");
+        try {
+            jdbcTemplate.execute("CREATE EXTENSION IF NOT EXISTS pg_trgm");
+            jdbcTemplate.execute("RELEASE SAVEPOINT create_pg_trgm");
+            return true;
+        } catch (DataAccessException e) {
+            jdbcTemplate.execute("ROLLBACK TO SAVEPOINT create_pg_trgm");
+            log.warn("pg_trgm could not be created, user substring search will not use an index: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Replaces refresh tokens stored in clear text by their SHA-256 hex, which is what lookups now use.
+     * Clear-text tokens are UUIDs of 36 characters, so rows that already hold a 64 character hash are left alone.
+     */
+    private void hashRefreshTokens() {
+        if (!needsMigration("SELECT EXISTS (SELECT 1 FROM refresh_tokens WHERE length(token) <> 64)")) {
+            return;
+        }
+        int updated = jdbcTemplate.update("""
+                UPDATE refresh_tokens SET token = encode(sha256(convert_to(token, 'UTF8')), 'hex')
+                WHERE length(token) <> 64
+                """);
+        log.info("Hashed {} clear-text refresh tokens", updated);
+    }
+
+    /**
+     * Moves refresh tokens from one per user to one per user and device. Drops the unique index and any
+     * unique constraint on user_id alone, gives tokens from before device ids existed a device of their own,
+     * and adds the unique index on (user_id, device_id) that the login upsert resolves conflicts on.
+     */
+    private void uniqueRefreshTokenPerDevice() {
+        jdbcTemplate.execute("DROP INDEX IF EXISTS uk_refresh_tokens_user");
+        List<String> userOnlyConstraints = jdbcTemplate.queryForList("""
+                SELECT c.conname FROM pg_constraint c
+                JOIN pg_attribute a ON a.attrelid = c.conrelid AND a.attnum = ANY (c.conkey)
+                WHERE c.conrelid = 'refresh_tokens'::regclass AND c.contype = 'u'
+                  AND cardinality(c.conkey) = 1 AND a.attname = 'user_id'
+                """, String.class);
+        for (String constraint : userOnlyConstraints) {
+            jdbcTemplate.execute("ALTER TABLE refresh_tokens DROP CONSTRAINT \"" + constraint + "\"");
+            log.info("Dropped unique constraint {} on refresh_tokens.user_id", constraint);
+        }
+
+        if (needsMigration("SELECT EXISTS (SELECT 1 FROM refresh_tokens WHERE device_id IS NULL)")) {
+            int updated = jdbcTemplate.update("""
+                    UPDATE refresh_tokens SET device_id = 'legacy-' || refresh_token_id
+                    WHERE device_id IS NULL
+                    """);
+            log.info("Assigned a device to {} refresh tokens", updated);
+        }
+        jdbcTemplate.execute("CREATE UNIQUE INDEX IF NOT EXISTS uk_refresh_tokens_user_device ON refresh_tokens (user_id, device_id)");
+    }
+
+    private boolean needsMigration(String existsQuery) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(existsQuery, Boolean.class));
+    }
+}
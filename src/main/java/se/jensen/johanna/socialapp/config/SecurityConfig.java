@@ -4,6 +4,7 @@ import com.nimbusds.jose.jwk.JWKSet;
 import com.nimbusds.jose.jwk.RSAKey;
 import com.nimbusds.jose.jwk.source.JWKSource;
 import com.nimbusds.jose.proc.SecurityContext;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -25,6 +26,8 @@ import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
+import se.jensen.johanna.socialapp.security.BoundedPasswordEncoder;
+import se.jensen.johanna.socialapp.security.CachingJwtDecoder;
 
 import java.security.KeyFactory;
 import java.security.KeyPair;
@@ -77,9 +80,16 @@ public class SecurityConfig {
         return source;
     }
 
+    /**
+     * BCrypt on a bounded pool of one thread per core, so login and registration bursts
+     * cannot take every request thread. Requests beyond the queue get 503 with Retry-After.
+     */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(MeterRegistry meterRegistry,
+                                           @Value("${app.auth.hashing.queue-capacity:64}") int queueCapacity,
+                                           @Value("${app.auth.hashing.retry-after-seconds:1}") long retryAfterSeconds) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        return new BoundedPasswordEncoder(new BCryptPasswordEncoder(), threads, queueCapacity, retryAfterSeconds, meterRegistry);
     }
 
     @Bean
@@ -113,11 +123,17 @@ public class SecurityConfig {
         return new NimbusJwtEncoder(jwkSource);
     }
 
+    /**
+     * Verifies access tokens against our public key, remembering verified tokens until they expire
+     * so a client's repeat requests skip the RS256 signature check.
+     */
     @Bean
-    public JwtDecoder jwtDecoder(KeyPair keyPair) {
-        return NimbusJwtDecoder
+    public JwtDecoder jwtDecoder(KeyPair keyPair, MeterRegistry meterRegistry,
+                                 @Value("${app.auth.jwt-cache.max-size:10000}") long cacheMaxSize) {
+        JwtDecoder verifier = NimbusJwtDecoder
                 .withPublicKey((RSAPublicKey) keyPair.getPublic())
                 .build();
+        return new CachingJwtDecoder(verifier, cacheMaxSize, meterRegistry);
     }
 
     @Bean
@@ -45,6 +45,21 @@ public class AdminController {
 
     }
 
+    /**
+     * Retrieves all users in cursor mode, ordered by userId
+     *
+     * @param cursor opaque cursor from the previous page, omitted for the first page
+     * @param size   number of users per page
+     * @return {@link CursorPage} of {@link AdminUserDTO}
+     */
+    @GetMapping("/users/scroll")
+    public ResponseEntity<CursorPage<AdminUserDTO>> scrollUsers(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size) {
+        CursorPage<AdminUserDTO> adminUserDTOS = userService.scrollUsersAdmin(cursor, size);
+        return ResponseEntity.ok(adminUserDTOS);
+    }
+
     /**
      * Grants or updates roles for a user.
      *
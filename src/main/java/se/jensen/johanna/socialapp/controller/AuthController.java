@@ -8,18 +8,21 @@ import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import se.jensen.johanna.socialapp.dto.AvailabilityResponse;
 import se.jensen.johanna.socialapp.dto.LoginRequestDTO;
 import se.jensen.johanna.socialapp.dto.LoginResponseDTO;
 import se.jensen.johanna.socialapp.dto.RefreshTokenResponse;
+import se.jensen.johanna.socialapp.dto.RefreshTokenSession;
 import se.jensen.johanna.socialapp.dto.RegisterUserRequest;
 import se.jensen.johanna.socialapp.exception.RefreshTokenException;
-import se.jensen.johanna.socialapp.model.RefreshToken;
 import se.jensen.johanna.socialapp.security.MyUserDetails;
 import se.jensen.johanna.socialapp.service.RefreshTokenService;
 import se.jensen.johanna.socialapp.service.TokenService;
 import se.jensen.johanna.socialapp.service.UserService;
 import se.jensen.johanna.socialapp.util.CookieUtils;
 
+import java.util.UUID;
+
 /**
  * REST controller for authentication operations.
  * Handles user login, registration, token refresh, and logout.
@@ -37,30 +40,46 @@ public class AuthController {
 
     /**
      * Authenticates a user and returns a JWT token
-     * Sets a refresh token as an HTTP-only cookie
+     * Sets a refresh token for this device as an HTTP-only cookie, next to the device id cookie
      *
      * @param loginRequestDTO {@link LoginRequestDTO} contains username and password
+     * @param deviceId        the device id from cookie, optional; a new one is issued if missing
      * @return Response with {@link LoginResponseDTO}
      */
     @PostMapping("/login")
     public ResponseEntity<LoginResponseDTO> getToken(@RequestBody
-                                                     LoginRequestDTO loginRequestDTO) {
+                                                     LoginRequestDTO loginRequestDTO,
+                                                     @CookieValue(name = "deviceId", required = false) String deviceId) {
 
 
         LoginResponseDTO loginResponseDTO = createLoginResponse(getAuth(loginRequestDTO.username(), loginRequestDTO.password()));
 
-        RefreshToken refreshToken = refreshTokenService.createRefreshToken(loginResponseDTO.userId());
-        ResponseCookie responseCookie = cookieUtils.createRefreshCookie(refreshToken.getToken());
+        return loginWithRefreshCookies(loginResponseDTO, deviceId);
+    }
 
-        return ResponseEntity.ok().header(HttpHeaders.SET_COOKIE, responseCookie.toString())
-                .body(loginResponseDTO);
+    /**
+     * Checks whether a username and/or email are still free, for live feedback in the signup form.
+     * Most free values are answered without a database query.
+     *
+     * @param username username to check, optional
+     * @param email    email to check, optional
+     * @return Response with {@link AvailabilityResponse}
+     */
+    @GetMapping("/availability")
+    public ResponseEntity<AvailabilityResponse> checkAvailability(
+            @RequestParam(required = false) String username,
+            @RequestParam(required = false) String email) {
+        return ResponseEntity.ok(userService.checkAvailability(username, email));
     }
 
     /**
-     * Authenticates the old token and returns a new JWT token and sets a new refresh token as a cookie
+     * Authenticates the old token and returns a new JWT token and sets a new refresh token as a cookie.
+     * If a concurrent refresh already rotated the old token moments ago, only a JWT is returned
+     * and the cookie is left as set by that refresh.
      *
      * @param oldTokenStr old token as a string
      * @return Response with {@link RefreshTokenResponse} contains JWT token
+     * @throws RefreshTokenException if the old token is unknown, already used or expired
      */
     @PostMapping("/refresh")
     public ResponseEntity<RefreshTokenResponse> refreshToken(
@@ -68,14 +87,15 @@ public class AuthController {
 
     ) {
 
-        RefreshToken oldToken = refreshTokenService.findByToken(oldTokenStr)
-                .map(refreshTokenService::verifyExpiration)
-                .orElseThrow(() -> new RefreshTokenException("RefreshToken is not in database"));
+        RefreshTokenService.Rotation rotation = refreshTokenService.rotate(oldTokenStr);
+        RefreshTokenSession session = rotation.session();
 
-        RefreshToken newRefreshToken = refreshTokenService.createRefreshToken(oldToken.getUser().getUserId());
-        ResponseCookie responseCookie = cookieUtils.createRefreshCookie(newRefreshToken.getToken());
-        String newJwt = tokenService.generateToken(oldToken.getUser());
+        String newJwt = tokenService.generateToken(session.userId(), session.username(), session.role());
 
+        if (rotation.token() == null) {
+            return ResponseEntity.ok(new RefreshTokenResponse(newJwt));
+        }
+        ResponseCookie responseCookie = cookieUtils.createRefreshCookie(rotation.token());
         return ResponseEntity.ok().header(HttpHeaders.SET_COOKIE, responseCookie.toString())
                 .body(new RefreshTokenResponse(newJwt));
 
@@ -84,28 +104,27 @@ public class AuthController {
 
     /**
      * Creates a new user and authenticates them automatically for a smooth client experience.
-     * Sets a refresh token as an HTTP-only cookie.
+     * Sets a refresh token for this device as an HTTP-only cookie, next to the device id cookie.
      *
      * @param registerUserRequest contains username, password and user details
+     * @param deviceId            the device id from cookie, optional; a new one is issued if missing
      * @return Response with {@link LoginResponseDTO} with JWT token and user information
      */
     @PostMapping("/register")
     public ResponseEntity<LoginResponseDTO> register(@RequestBody
-                                                     RegisterUserRequest registerUserRequest) {
+                                                     RegisterUserRequest registerUserRequest,
+                                                     @CookieValue(name = "deviceId", required = false) String deviceId) {
 
         userService.registerUser(registerUserRequest);
         LoginResponseDTO loginResponseDTO = createLoginResponse(getAuth(registerUserRequest.username(), registerUserRequest.password()));
-        RefreshToken refreshToken = refreshTokenService.createRefreshToken(loginResponseDTO.userId());
-        ResponseCookie responseCookie = cookieUtils.createRefreshCookie(refreshToken.getToken());
-
 
-        return ResponseEntity.ok().header(HttpHeaders.SET_COOKIE, responseCookie.toString())
-                .body(loginResponseDTO);
+        return loginWithRefreshCookies(loginResponseDTO, deviceId);
 
     }
 
     /**
-     * Logs out a user by deleting their refresh token and clearing the cookie.
+     * Logs out this device by deleting its refresh token and clearing the cookie.
+     * Sessions on the user's other devices stay valid, and the device id cookie is kept for the next login.
      *
      * @param refreshTokenStr the refresh token from cookie, optional
      * @return empty Response with clear header
@@ -123,6 +142,36 @@ public class AuthController {
         return ResponseEntity.noContent().header(HttpHeaders.SET_COOKIE, cleanCookie.toString()).build();
     }
 
+    /**
+     * Private help method that creates a refresh token for the device and returns the login response
+     * with the refresh token and device id cookies. A missing or malformed device id is replaced by a new one.
+     *
+     * @param loginResponseDTO the response of the authenticated user
+     * @param deviceId         the device id from cookie, may be null
+     * @return Response with {@link LoginResponseDTO} and both cookies
+     */
+    private ResponseEntity<LoginResponseDTO> loginWithRefreshCookies(LoginResponseDTO loginResponseDTO, String deviceId) {
+        String device = isValidDeviceId(deviceId) ? deviceId : UUID.randomUUID().toString();
+        String refreshToken = refreshTokenService.createRefreshToken(
+                loginResponseDTO.userId(), loginResponseDTO.username(), loginResponseDTO.role(), device);
+
+        return ResponseEntity.ok()
+                .header(HttpHeaders.SET_COOKIE, cookieUtils.createRefreshCookie(refreshToken).toString())
+                .header(HttpHeaders.SET_COOKIE, cookieUtils.createDeviceCookie(device).toString())
+                .body(loginResponseDTO);
+    }
+
+    private boolean isValidDeviceId(String deviceId) {
+        if (deviceId == null) {
+            return false;
+        }
+        try {
+            return UUID.fromString(deviceId).toString().equals(deviceId);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
     /**
      * private Help method that receives an Authentication object and returns LoginResponseDTO
      *
@@ -53,6 +53,51 @@ public class CommentController {
         return ResponseEntity.ok(commentDTOS);
     }
 
+    /**
+     * Retrieves the main comments for a post with their replies down to a bounded depth.
+     * The whole page is loaded with a fixed number of queries, however large the threads are.
+     *
+     * @param postId ID of the post to fetch comments to
+     * @param depth  number of reply levels to include
+     * @return {@link CommentDTO} with nested replies
+     */
+    @GetMapping("/posts/{postId}/comments/tree")
+    public ResponseEntity<Page<CommentDTO>> getCommentTreeForPost(@PathVariable
+                                                                  Long postId,
+                                                                  @RequestParam(defaultValue = "3")
+                                                                  int depth,
+                                                                  @ParameterObject
+                                                                  @PageableDefault(size = 10,
+                                                                  sort = "createdAt",
+                                                                  direction = Sort.Direction.DESC)
+                                                                  Pageable pageable) {
+
+        Page<CommentDTO> commentDTOS = commentService.findCommentTree(postId, depth, pageable);
+
+        return ResponseEntity.ok(commentDTOS);
+    }
+
+    /**
+     * Retrieves the main comments for a post in cursor mode, newest first
+     *
+     * @param postId ID of the post to fetch comments to
+     * @param cursor opaque cursor from the previous page, omitted for the first page
+     * @param size   number of comments per page
+     * @return {@link CursorPage} of {@link CommentDTO}
+     */
+    @GetMapping("/posts/{postId}/comments/scroll")
+    public ResponseEntity<CursorPage<CommentDTO>> scrollCommentsForPost(@PathVariable
+                                                                        Long postId,
+                                                                        @RequestParam(required = false)
+                                                                        String cursor,
+                                                                        @RequestParam(defaultValue = "10")
+                                                                        int size) {
+
+        CursorPage<CommentDTO> commentDTOS = commentService.scrollMainComments(postId, cursor, size);
+
+        return ResponseEntity.ok(commentDTOS);
+    }
+
     /**
      * Creates a comment to a specific post as an authenticated user
      *
@@ -130,6 +175,54 @@ public class CommentController {
 
     }
 
+    /**
+     * Retrieves the replies to a specific comment in cursor mode, oldest first
+     *
+     * @param commentId ID of comment
+     * @param cursor    opaque cursor from the previous page, omitted for the first page
+     * @param size      number of replies per page
+     * @return {@link CursorPage} of {@link CommentDTO}
+     */
+    @GetMapping("/comments/{commentId}/replies/scroll")
+    public ResponseEntity<CursorPage<CommentDTO>> scrollRepliesForComment(
+            @PathVariable
+            Long commentId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "5") int size) {
+        CursorPage<CommentDTO> replies = commentService.scrollReplies(commentId, cursor, size);
+
+        return ResponseEntity.ok(replies);
+
+    }
+
+    /**
+     * Retrieves a comment with its replies down to a bounded depth, capped per comment and in total
+     *
+     * @param commentId ID of comment
+     * @param depth     number of reply levels to include
+     * @return {@link CommentDTO} with nested replies
+     */
+    @GetMapping("/comments/{commentId}/thread")
+    public ResponseEntity<CommentDTO> getThreadForComment(
+            @PathVariable
+            Long commentId,
+            @RequestParam(defaultValue = "3") int depth) {
+        CommentDTO thread = commentService.findThread(commentId, depth);
+
+        return ResponseEntity.ok(thread);
+    }
+
+    /**
+     * Counts all replies in the thread below a comment, at any depth
+     *
+     * @param commentId ID of comment
+     * @return number of replies
+     */
+    @GetMapping("/comments/{commentId}/thread/count")
+    public ResponseEntity<Long> countRepliesInThread(@PathVariable Long commentId) {
+        return ResponseEntity.ok(commentService.countThreadReplies(commentId));
+    }
+
     /**
      * Updates a specific comment as an authenticated user and verified owner of comment
      * Only the owner of the comment is authorized to perform this update
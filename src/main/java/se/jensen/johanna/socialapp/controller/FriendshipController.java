@@ -1,5 +1,6 @@
 package se.jensen.johanna.socialapp.controller;
 
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -8,10 +9,13 @@ import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.web.bind.annotation.*;
 import se.jensen.johanna.socialapp.dto.FriendResponseDTO;
+import se.jensen.johanna.socialapp.dto.FriendshipStatusBatchRequest;
 import se.jensen.johanna.socialapp.dto.FriendshipStatusDTO;
 import se.jensen.johanna.socialapp.service.FriendshipService;
 import se.jensen.johanna.socialapp.util.JwtUtils;
 
+import java.util.Map;
+
 /**
  * REST controller for managing friendships and friend requests.
  * Provides endpoints for sending, accepting, rejecting, and deleting friendships
@@ -129,4 +133,21 @@ public class FriendshipController {
         return ResponseEntity.ok(statusDTO);
     }
 
+    /**
+     * Checks the friendship status between the logged-in user and up to 500 target users in one call.
+     * Users without a relationship are left out of the returned map.
+     *
+     * @param request the ids of the users to check
+     * @param jwt     the authenticated user's JWT token
+     * @return a ResponseEntity containing a map from user id to {@link FriendshipStatusDTO}
+     */
+    @PostMapping("/status:batch")
+    public ResponseEntity<Map<Long, FriendshipStatusDTO>> getFriendshipStatuses(
+            @RequestBody @Valid FriendshipStatusBatchRequest request,
+            @AuthenticationPrincipal Jwt jwt) {
+        Long currentUserId = jwtUtils.extractUserId(jwt);
+        Map<Long, FriendshipStatusDTO> statuses = friendshipService.getFriendshipStatuses(currentUserId, request.userIds());
+        return ResponseEntity.ok(statuses);
+    }
+
 }
@@ -4,6 +4,7 @@ import lombok.RequiredArgsConstructor;
 import org.springdoc.core.annotations.ParameterObject;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.web.PageableDefault;
 import org.springframework.http.ResponseEntity;
@@ -12,6 +13,7 @@ import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.web.bind.annotation.*;
 import se.jensen.johanna.socialapp.dto.*;
+import se.jensen.johanna.socialapp.service.FeedService;
 import se.jensen.johanna.socialapp.service.FriendshipService;
 import se.jensen.johanna.socialapp.service.PostService;
 import se.jensen.johanna.socialapp.service.UserService;
@@ -33,6 +35,7 @@ public class MyController {
     private final FriendshipService friendshipService;
     private final JwtUtils jwtUtils;
     private final PostService postService;
+    private final FeedService feedService;
 
 
     @GetMapping
@@ -59,6 +62,59 @@ public class MyController {
 
     }
 
+    /**
+     * Retrieves the home feed of the authenticated user, containing posts from the user
+     * and their accepted friends, newest first.
+     *
+     * @param pageable page number and size
+     * @param jwt      the {@link Jwt} access token containing the authenticated user's identity
+     * @return a ResponseEntity containing a {@link Slice} of {@link PostDTO}
+     */
+    @GetMapping("/feed")
+    public ResponseEntity<Slice<PostDTO>> getMyFeed(
+            @ParameterObject @PageableDefault(size = 10) Pageable pageable,
+            @AuthenticationPrincipal Jwt jwt) {
+        Long userId = jwtUtils.extractUserId(jwt);
+        Slice<PostDTO> feed = feedService.getFeed(userId, pageable);
+        return ResponseEntity.ok(feed);
+    }
+
+    /**
+     * Retrieves the home feed of the authenticated user in cursor mode, newest first.
+     *
+     * @param cursor opaque cursor from the previous page, omitted for the first page
+     * @param size   number of posts per page
+     * @param jwt    the {@link Jwt} access token containing the authenticated user's identity
+     * @return a ResponseEntity containing a {@link CursorPage} of {@link PostDTO}
+     */
+    @GetMapping("/feed/scroll")
+    public ResponseEntity<CursorPage<PostDTO>> scrollMyFeed(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size,
+            @AuthenticationPrincipal Jwt jwt) {
+        Long userId = jwtUtils.extractUserId(jwt);
+        CursorPage<PostDTO> feed = feedService.scrollFeed(userId, cursor, size);
+        return ResponseEntity.ok(feed);
+    }
+
+    /**
+     * Retrieves the posts of the currently authenticated user in cursor mode, newest first.
+     *
+     * @param cursor opaque cursor from the previous page, omitted for the first page
+     * @param size   number of posts per page
+     * @param jwt    the {@link Jwt} access token containing the authenticated user's identity
+     * @return a ResponseEntity containing a {@link CursorPage} of {@link UserPostDTO}
+     */
+    @GetMapping("/posts/scroll")
+    public ResponseEntity<CursorPage<UserPostDTO>> scrollMyPosts(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size,
+            @AuthenticationPrincipal Jwt jwt) {
+        Long userId = jwtUtils.extractUserId(jwt);
+        CursorPage<UserPostDTO> myPosts = postService.scrollPostsForUser(userId, cursor, size);
+        return ResponseEntity.ok(myPosts);
+    }
+
     /**
      * Returns a list of pending friendrequests for the authenticated user
      * Contains a boolean isIncoming, is true if the user is on the receiving end
@@ -77,6 +133,25 @@ public class MyController {
     }
 
 
+    /**
+     * Returns pending friend requests for the authenticated user in cursor mode.
+     *
+     * @param cursor opaque cursor from the previous page, omitted for the first page
+     * @param size   number of requests per page
+     * @param jwt    AccessToken containing ID of the authenticated user
+     * @return {@link CursorPage} of {@link MyFriendRequest}
+     */
+    @GetMapping("/friend-request/scroll")
+    public ResponseEntity<CursorPage<MyFriendRequest>> scrollFriendRequests(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @AuthenticationPrincipal Jwt jwt) {
+        Long userId = jwtUtils.extractUserId(jwt);
+        CursorPage<MyFriendRequest> myFriendRequests = friendshipService.scrollFriendRequestsForUser(userId, cursor, size);
+        return ResponseEntity.ok(myFriendRequests);
+    }
+
+
     /**
      * Retrieves a list of all accepted friends for the authenticated user.
      *
@@ -93,6 +168,43 @@ public class MyController {
         return ResponseEntity.ok(friends);
     }
 
+    /**
+     * Retrieves the accepted friends of the authenticated user in cursor mode.
+     *
+     * @param cursor opaque cursor from the previous page, omitted for the first page
+     * @param size   number of friends per page
+     * @param jwt    the {@link Jwt} access token containing the authenticated user's identity
+     * @return a {@link ResponseEntity} containing a {@link CursorPage} of {@link UserListDTO}
+     */
+    @GetMapping("/friends/scroll")
+    public ResponseEntity<CursorPage<UserListDTO>> scrollMyFriends(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @AuthenticationPrincipal Jwt jwt) {
+        Long userId = jwtUtils.extractUserId(jwt);
+        CursorPage<UserListDTO> friends = friendshipService.scrollFriendsForUser(userId, cursor, size);
+        return ResponseEntity.ok(friends);
+    }
+
+    /**
+     * Retrieves "people you may know" for the authenticated user in cursor mode,
+     * ranked by the number of mutual friends.
+     *
+     * @param cursor opaque cursor from the previous page, omitted for the first page
+     * @param size   number of suggestions per page
+     * @param jwt    the {@link Jwt} access token containing the authenticated user's identity
+     * @return a {@link ResponseEntity} containing a {@link CursorPage} of {@link FriendSuggestionDTO}
+     */
+    @GetMapping("/friend-suggestions")
+    public ResponseEntity<CursorPage<FriendSuggestionDTO>> getFriendSuggestions(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size,
+            @AuthenticationPrincipal Jwt jwt) {
+        Long userId = jwtUtils.extractUserId(jwt);
+        CursorPage<FriendSuggestionDTO> suggestions = friendshipService.getFriendSuggestions(userId, cursor, size);
+        return ResponseEntity.ok(suggestions);
+    }
+
     /**
      * Updates the profile information of the authenticated user.
      *
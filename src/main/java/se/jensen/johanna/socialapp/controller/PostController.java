@@ -14,6 +14,7 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.web.bind.annotation.*;
+import se.jensen.johanna.socialapp.dto.CursorPage;
 import se.jensen.johanna.socialapp.dto.PostDTO;
 import se.jensen.johanna.socialapp.dto.PostRequest;
 import se.jensen.johanna.socialapp.dto.PostResponseDTO;
@@ -53,6 +54,24 @@ public class PostController {
 
     }
 
+    /**
+     * Retrieves all posts in cursor mode, sorted by creation date in descending order.
+     * Pass the nextCursor of a response to get the following page.
+     *
+     * @param cursor opaque cursor from the previous page, omitted for the first page
+     * @param size   number of posts per page
+     * @return a ResponseEntity containing a {@link CursorPage} of PostDTO.
+     */
+    @GetMapping("/scroll")
+    public ResponseEntity<CursorPage<PostDTO>> scrollPosts(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size
+    ) {
+        CursorPage<PostDTO> postDTOS = postService.scrollPosts(cursor, size);
+
+        return ResponseEntity.ok(postDTOS);
+    }
+
     /**
      * Retrieves a specific post by its ID.
      *
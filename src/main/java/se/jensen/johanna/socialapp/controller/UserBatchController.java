@@ -0,0 +1,37 @@
+package se.jensen.johanna.socialapp.controller;
+
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+import se.jensen.johanna.socialapp.dto.UserBatchGetRequest;
+import se.jensen.johanna.socialapp.dto.UserListDTO;
+import se.jensen.johanna.socialapp.service.UserService;
+
+import java.util.List;
+
+/**
+ * REST controller for custom methods on the user collection.
+ * Kept apart from {@link UserController}, whose class-level "/users" mapping would turn
+ * "/users:batchGet" into "/users/:batchGet".
+ */
+
+@RestController
+@RequiredArgsConstructor
+public class UserBatchController {
+    private final UserService userService;
+
+    /**
+     * Retrieves up to 500 users in one request, e.g. to render the authors of a page of comments.
+     *
+     * @param request the ids of the users to retrieve
+     * @return list of {@link UserListDTO} in request order, unknown ids are left out
+     */
+    @PostMapping("/users:batchGet")
+    public ResponseEntity<List<UserListDTO>> batchGetUsers(@RequestBody @Valid UserBatchGetRequest request) {
+        List<UserListDTO> users = userService.getUsersByIds(request.userIds());
+        return ResponseEntity.ok(users);
+    }
+}
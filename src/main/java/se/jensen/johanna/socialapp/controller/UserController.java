@@ -4,16 +4,24 @@ import lombok.RequiredArgsConstructor;
 import org.springdoc.core.annotations.ParameterObject;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import se.jensen.johanna.socialapp.dto.CursorPage;
+import se.jensen.johanna.socialapp.dto.FriendPathDTO;
 import se.jensen.johanna.socialapp.dto.UserDTO;
 import se.jensen.johanna.socialapp.dto.UserListDTO;
 import se.jensen.johanna.socialapp.dto.UserPostDTO;
 import se.jensen.johanna.socialapp.service.FriendshipService;
 import se.jensen.johanna.socialapp.service.PostService;
 import se.jensen.johanna.socialapp.service.UserService;
+import se.jensen.johanna.socialapp.util.JwtUtils;
 
 import java.util.List;
 
@@ -29,6 +37,7 @@ public class UserController {
     private final UserService userService;
     private final FriendshipService friendshipService;
     private final PostService postService;
+    private final JwtUtils jwtUtils;
 
     /**
      * Searches for users by their username with support for pagination.
@@ -36,43 +45,75 @@ public class UserController {
      * * The search is case-insensitive and matches any username that contains
      * * the provided search string. Results are returned in a paginated format
      * * to ensure high performance and low network overhead.
+     * * No total count is returned, since counting every match of a short prefix costs more than the page itself.
      * * </p>
      *
      * @param username Content to search
      * @param pageable Pagination and sorting information
-     * @return Paginated list of UserDTO
+     * @return Slice of UserDTO, with hasNext instead of a total count
      */
     @GetMapping("/search")
-    public ResponseEntity<Page<UserDTO>> searchUsers(
+    public ResponseEntity<Slice<UserDTO>> searchUsers(
             @RequestParam("q") String username,
             @ParameterObject @PageableDefault(size = 10, sort = "username", direction = Sort.Direction.ASC) Pageable pageable) {
 
-        Page<UserDTO> userDtos = userService.searchUsers(username, pageable);
+        Slice<UserDTO> userDtos = userService.searchUsers(username, pageable);
         return ResponseEntity.ok(userDtos);
     }
 
     /**
-     * Retrieves a list of all users with the MEMBER role.
+     * Returns the first users whose username starts with the prefix, for typeahead while typing.
+     *
+     * @param prefix start of the username, case-insensitive
+     * @param limit  maximum number of users, at most 20
+     * @return list of UserListDTO
+     */
+    @GetMapping("/typeahead")
+    public ResponseEntity<List<UserListDTO>> typeahead(
+            @RequestParam String prefix,
+            @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(userService.typeahead(prefix, limit));
+    }
+
+    /**
+     * Retrieves the user directory in cursor mode, ordered by userId.
      * The returned list contains simplified user information.
      *
-     * @return a list of UserListDTO objects
+     * @param cursor opaque cursor from the previous page, omitted for the first page
+     * @param size   number of users per page
+     * @return {@link CursorPage} of UserListDTO
      */
-    @GetMapping
-    public ResponseEntity<List<UserListDTO>> getAllUsers() {
-        List<UserListDTO> users = userService.getAllUsers();
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<CursorPage<UserListDTO>> getAllUsers(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size) {
+        CursorPage<UserListDTO> users = userService.scrollUsers(cursor, size);
         return ResponseEntity.ok(users);
     }
 
+    /**
+     * Streams the whole user directory as newline-delimited JSON, one UserListDTO per line.
+     * Selected with {@code Accept: application/x-ndjson}; memory use is constant regardless of the number of users.
+     *
+     * @return streaming response body
+     */
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllUsers() {
+        StreamingResponseBody body = userService::writeAllUsers;
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
     /**
      * Retrieves detailed profile information for a specific user.
      *
      * @param userId the ID of the user to retrieve
+     * @param jwt    the {@link Jwt} access token of the viewer, used for the mutual friend count
      * @return the UserDTO containing user details
      */
 
     @GetMapping("/{userId}")
-    public ResponseEntity<UserDTO> getUser(@PathVariable Long userId) {
-        UserDTO userDTO = userService.getUser(userId);
+    public ResponseEntity<UserDTO> getUser(@PathVariable Long userId, @AuthenticationPrincipal Jwt jwt) {
+        UserDTO userDTO = userService.getUser(userId, jwtUtils.extractUserId(jwt));
         return ResponseEntity.ok(userDTO);
 
     }
@@ -87,6 +128,23 @@ public class UserController {
 
     }
 
+    /**
+     * Retrieves the posts of a specific user in cursor mode, newest first.
+     *
+     * @param userId the ID of the user whose posts are retrieved
+     * @param cursor opaque cursor from the previous page, omitted for the first page
+     * @param size   number of posts per page
+     * @return {@link CursorPage} of {@link UserPostDTO}
+     */
+    @GetMapping("/{userId}/posts/scroll")
+    public ResponseEntity<CursorPage<UserPostDTO>> scrollUserPosts(
+            @PathVariable Long userId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size) {
+        CursorPage<UserPostDTO> userPosts = postService.scrollPostsForUser(userId, cursor, size);
+        return ResponseEntity.ok(userPosts);
+    }
+
     /**
      * Retrieves a list of accepted friendships to a specific user
      *
@@ -102,5 +160,48 @@ public class UserController {
         return ResponseEntity.ok(friends);
     }
 
+    /**
+     * Retrieves the shortest chain of friendships between two users, up to six friendships long
+     *
+     * @param userId      ID of the first user
+     * @param otherUserId ID of the last user
+     * @return {@link FriendPathDTO} with the users along the path
+     */
+    @GetMapping("/{userId}/path/{otherUserId}")
+    public ResponseEntity<FriendPathDTO> getFriendPath(@PathVariable Long userId, @PathVariable Long otherUserId) {
+        FriendPathDTO path = friendshipService.getFriendPath(userId, otherUserId);
+        return ResponseEntity.ok(path);
+    }
+
+    /**
+     * Retrieves the accepted friends of a specific user in cursor mode
+     *
+     * @param userId ID of user to fetch friends for
+     * @param cursor opaque cursor from the previous page, omitted for the first page
+     * @param size   number of friends per page
+     * @return {@link CursorPage} of {@link UserListDTO}
+     */
+    @GetMapping("/{userId}/friends/scroll")
+    public ResponseEntity<CursorPage<UserListDTO>> scrollUserFriends(
+            @PathVariable Long userId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        CursorPage<UserListDTO> friends = friendshipService.scrollFriendsForUser(userId, cursor, size);
+        return ResponseEntity.ok(friends);
+    }
+
+    /**
+     * Retrieves the friends the authenticated user has in common with a specific user
+     *
+     * @param userId ID of the user whose profile is viewed
+     * @param jwt    the {@link Jwt} access token containing the authenticated user's identity
+     * @return {@link UserListDTO}
+     */
+    @GetMapping("/{userId}/mutual-friends")
+    public ResponseEntity<List<UserListDTO>> getMutualFriends(@PathVariable Long userId, @AuthenticationPrincipal Jwt jwt) {
+        List<UserListDTO> mutualFriends = friendshipService.getMutualFriends(jwtUtils.extractUserId(jwt), userId);
+        return ResponseEntity.ok(mutualFriends);
+    }
+
 
 }
@@ -0,0 +1,7 @@
+package se.jensen.johanna.socialapp.dto;
+
+public record AvailabilityResponse(
+        Boolean usernameAvailable, // Null when no username was checked
+        Boolean emailAvailable // Null when no email was checked
+) {
+}
@@ -11,6 +11,8 @@ import java.util.List;
  * @param createdAt
  * @param updatedAt
  * @param replies
+ * @param hasMoreReplies true if the comment has replies that are not included, which can be paged through
+ *                       with the replies endpoint; null when replies were not loaded
  */
 public record CommentDTO(
         Long commentId,
@@ -19,6 +21,7 @@ public record CommentDTO(
         String text,
         LocalDateTime createdAt,
         LocalDateTime updatedAt,
-        List<CommentDTO> replies
+        List<CommentDTO> replies,
+        Boolean hasMoreReplies
 ) {
 }
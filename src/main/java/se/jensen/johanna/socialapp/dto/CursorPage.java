@@ -0,0 +1,19 @@
+package se.jensen.johanna.socialapp.dto;
+
+import java.util.List;
+
+/**
+ * A page of results in cursor (keyset) mode.
+ * Unlike a {@link org.springframework.data.domain.Page} it carries no total count,
+ * so every page costs the same regardless of how deep the client has scrolled.
+ *
+ * @param content    the items on this page
+ * @param nextCursor opaque cursor to pass back for the next page, null when there is none
+ * @param hasNext    true if there are more items after this page
+ */
+public record CursorPage<T>(
+        List<T> content,
+        String nextCursor,
+        boolean hasNext
+) {
+}
@@ -0,0 +1,9 @@
+package se.jensen.johanna.socialapp.dto;
+
+import java.util.List;
+
+public record FriendPathDTO(
+        int degrees, // Number of friendships between the first and last user
+        List<UserListDTO> path // Users from the first to the last user
+) {
+}
@@ -0,0 +1,9 @@
+package se.jensen.johanna.socialapp.dto;
+
+public record FriendSuggestionDTO(
+        Long userId,
+        String username,
+        String profileImagePath,
+        int mutualFriendCount
+) {
+}
@@ -0,0 +1,13 @@
+package se.jensen.johanna.socialapp.dto;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public record FriendshipStatusBatchRequest(
+        @NotNull
+        @Size(max = 500, message = "A maximum of 500 user ids can be checked per request")
+        List<Long> userIds
+) {
+}
@@ -0,0 +1,16 @@
+package se.jensen.johanna.socialapp.dto;
+
+import se.jensen.johanna.socialapp.model.Role;
+
+import java.time.Instant;
+
+/**
+ * The user behind a refresh token, with what is needed to issue a new access token without loading the user.
+ */
+public record RefreshTokenSession(
+        Long userId,
+        String username,
+        Role role,
+        Instant expiryDate
+) {
+}
@@ -0,0 +1,13 @@
+package se.jensen.johanna.socialapp.dto;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public record UserBatchGetRequest(
+        @NotNull
+        @Size(max = 500, message = "A maximum of 500 users can be fetched per request")
+        List<@NotNull Long> userIds
+) {
+}
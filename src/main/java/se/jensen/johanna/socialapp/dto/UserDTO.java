@@ -4,6 +4,7 @@ public record UserDTO(
         Long userId,
         String profileImagePath,
         String username,
-        String bio
+        String bio,
+        Integer mutualFriendCount // Friends in common with the viewer, null when not computed
 ) {
 }
@@ -0,0 +1,13 @@
+package se.jensen.johanna.socialapp.dto;
+
+/**
+ * Cached profile data of a user, used to render profiles and author info without loading the {@code User} entity.
+ */
+public record UserSummaryDTO(
+        Long userId,
+        String username,
+        String profileImagePath,
+        String bio,
+        String email
+) {
+}
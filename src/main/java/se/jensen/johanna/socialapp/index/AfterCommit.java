@@ -0,0 +1,31 @@
+package se.jensen.johanna.socialapp.index;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Defers index and cache updates until the surrounding transaction commits,
+ * so an in-memory index never shows a change that was rolled back, and a cache
+ * evicted before commit is not refilled with the old row by a concurrent read.
+ */
+public final class AfterCommit {
+
+    private AfterCommit() {
+    }
+
+    /**
+     * Runs the change after commit, or immediately when no transaction is active.
+     */
+    public static void run(Runnable change) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    change.run();
+                }
+            });
+        } else {
+            change.run();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package se.jensen.johanna.socialapp.index;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Bloom filter with 8-bit counters instead of bits, so values can be removed again.
+ * {@link #mightContain} never returns false for a value that was added and not removed;
+ * it returns true for an absent value with about the configured false positive rate.
+ * A counter that reaches 255 is never decremented again, which only adds false positives.
+ * <p>
+ * Not thread-safe; the owner keeps lookups apart from adds and removes, e.g. with a read/write lock.
+ */
+final class CountingBloomFilter {
+    private static final int SATURATED = 0xFF;
+
+    private final byte[] counters;
+    private final int hashCount;
+
+    /**
+     * @param expectedInsertions number of values the filter is sized for
+     * @param falsePositiveRate  wanted false positive rate at that size, e.g. 0.01
+     */
+    CountingBloomFilter(long expectedInsertions, double falsePositiveRate) {
+        long n = Math.max(1, expectedInsertions);
+        long m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.counters = new byte[(int) Math.min(Integer.MAX_VALUE - 8, Math.max(64, m))];
+        this.hashCount = Math.max(1, (int) Math.round((double) counters.length / n * Math.log(2)));
+    }
+
+    void add(String value) {
+        long hash = hash(value);
+        for (int i = 0; i < hashCount; i++) {
+            int index = index(hash, i);
+            int count = counters[index] & 0xFF;
+            if (count < SATURATED) {
+                counters[index] = (byte) (count + 1);
+            }
+        }
+    }
+
+    void remove(String value) {
+        long hash = hash(value);
+        for (int i = 0; i < hashCount; i++) {
+            int index = index(hash, i);
+            int count = counters[index] & 0xFF;
+            if (count > 0 && count < SATURATED) {
+                counters[index] = (byte) (count - 1);
+            }
+        }
+    }
+
+    boolean mightContain(String value) {
+        long hash = hash(value);
+        for (int i = 0; i < hashCount; i++) {
+            if (counters[index(hash, i)] == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Double hashing: the i-th index is h1 + i * h2, with h1 and h2 the two halves of one 64-bit hash
+    private int index(long hash, int i) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        int combined = h1 + i * h2;
+        return (combined & Integer.MAX_VALUE) % counters.length;
+    }
+
+    // 64-bit FNV-1a over the UTF-8 bytes, finished with the MurmurHash3 mixer to spread the bits
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
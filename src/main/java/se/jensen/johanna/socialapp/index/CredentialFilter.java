@@ -0,0 +1,154 @@
+package se.jensen.johanna.socialapp.index;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import se.jensen.johanna.socialapp.repository.UserRepository;
+
+import java.util.Locale;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Bloom filters over registered usernames and emails, used to answer "definitely free"
+ * during registration without a database query. Values are compared lowercase,
+ * so a hit also covers differently-cased duplicates and the database decides.
+ * <p>
+ * Until the filters are loaded at startup every value is reported as possibly taken,
+ * so callers always fall back to the database then.
+ * <p>
+ * Lookups share a read lock and do not block each other; only adds, removes and reloads take the write lock.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CredentialFilter implements ApplicationRunner {
+    private final UserRepository userRepository;
+
+    @Value("${app.users.credential-filter.expected-users:1000000}")
+    private long expectedUsers = 1_000_000;
+
+    @Value("${app.users.credential-filter.false-positive-rate:0.01}")
+    private double falsePositiveRate = 0.01;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private volatile CountingBloomFilter usernames;
+    private volatile CountingBloomFilter emails;
+    private volatile boolean loaded;
+
+    @Override
+    @Transactional(readOnly = true)
+    public void run(ApplicationArguments args) {
+        load();
+    }
+
+    /**
+     * Fills the filters from all users in the database.
+     * Registrations during loading are added to the same filters, so none are lost.
+     */
+    @Transactional(readOnly = true)
+    public void load() {
+        long start = System.nanoTime();
+        lock.writeLock().lock();
+        try {
+            loaded = false;
+            usernames = new CountingBloomFilter(expectedUsers, falsePositiveRate);
+            emails = new CountingBloomFilter(expectedUsers, falsePositiveRate);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        try (Stream<String> all = userRepository.streamAllUsernames()) {
+            all.forEach(username -> add(usernames, username));
+        }
+        try (Stream<String> all = userRepository.streamAllEmails()) {
+            all.forEach(email -> add(emails, email));
+        }
+        loaded = true;
+        log.info("Credential filter loaded in {} ms", (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * @return false only if no user has this username
+     */
+    public boolean mightHaveUsername(String username) {
+        return !loaded || contains(usernames, username);
+    }
+
+    /**
+     * @return false only if no user has this email
+     */
+    public boolean mightHaveEmail(String email) {
+        return !loaded || contains(emails, email);
+    }
+
+    /**
+     * Adds a registered user's credentials once the current transaction commits.
+     */
+    public void userRegistered(String username, String email) {
+        AfterCommit.run(() -> {
+            add(usernames, username);
+            add(emails, email);
+        });
+    }
+
+    /**
+     * Removes a deleted user's credentials once the current transaction commits.
+     * While loading, removals are skipped: the user may not have been counted yet,
+     * and a stale entry only causes a database check.
+     */
+    public void userDeleted(String username, String email) {
+        AfterCommit.run(() -> {
+            if (loaded) {
+                remove(usernames, username);
+                remove(emails, email);
+            }
+        });
+    }
+
+    private void add(CountingBloomFilter filter, String value) {
+        if (filter != null && value != null) {
+            String normalized = normalize(value);
+            lock.writeLock().lock();
+            try {
+                filter.add(normalized);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    private void remove(CountingBloomFilter filter, String value) {
+        if (filter != null && value != null) {
+            String normalized = normalize(value);
+            lock.writeLock().lock();
+            try {
+                filter.remove(normalized);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    private boolean contains(CountingBloomFilter filter, String value) {
+        if (value == null) {
+            return true;
+        }
+        String normalized = normalize(value);
+        lock.readLock().lock();
+        try {
+            return filter.mightContain(normalized);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static String normalize(String value) {
+        return value.strip().toLowerCase(Locale.ROOT);
+    }
+}
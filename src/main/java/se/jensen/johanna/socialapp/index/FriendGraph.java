@@ -0,0 +1,353 @@
+package se.jensen.johanna.socialapp.index;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import se.jensen.johanna.socialapp.model.FriendshipStatus;
+import se.jensen.johanna.socialapp.repository.FriendshipRepository;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * In-process adjacency index of the friendship graph.
+ * <p>
+ * Every user has a sorted {@code long[]} of accepted friends and one of users with a pending request
+ * in either direction, and every pair of users with a relation has an {@link Edge}.
+ * The index is loaded from the database at startup and kept current by {@code FriendshipService},
+ * which reports every change here. Changes are applied after the surrounding transaction commits,
+ * so the index never shows a relation that was rolled back.
+ * <p>
+ * After-commit callbacks of concurrent transactions can run in any order, so every change names the
+ * friendship row it belongs to and stale ones are ignored: a row only moves from pending to accepted to removed,
+ * and a removed row is remembered for a while so a late accept or request cannot bring it back.
+ * <p>
+ * Reads never lock: nodes are immutable and replaced as a whole on every change.
+ * The index is local to one application instance and only serves reads: durable writes such as
+ * the feed fan-out take their recipients from the database. Until the startup load has finished the
+ * application is not ready, and {@code ReadinessConfig} answers API requests with 503.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FriendGraph implements ApplicationRunner {
+    private static final Node EMPTY_NODE = new Node(LongArrays.EMPTY, LongArrays.EMPTY);
+    // Far longer than any after-commit callback can be delayed behind another
+    private static final Duration REMOVED_RETENTION = Duration.ofMinutes(10);
+
+    private final FriendshipRepository friendshipRepository;
+
+    @Value("${app.friends.path-max-visited:100000}")
+    private int pathMaxVisited = 100_000;
+
+    @Value("${app.friends.suggestions.per-user:50}")
+    private int suggestionsPerUser = 50;
+
+    @Value("${app.friends.suggestions.hub-degree:1000}")
+    private int suggestionsHubDegree = 1000;
+
+    @Value("${app.friends.suggestions.max-scanned:100000}")
+    private int suggestionsMaxScanned = 100_000;
+
+    @Value("${app.friends.suggestions.cached-users:50000}")
+    private long suggestionsCachedUsers = 50_000;
+
+    private volatile Map<Long, Node> nodes = new ConcurrentHashMap<>();
+    private volatile Map<Pair, Edge> edges = new ConcurrentHashMap<>();
+    private volatile MutualFriendCounts mutualFriendCounts = newMutualFriendCounts();
+    private final Cache<Long, Boolean> removedFriendships = Caffeine.newBuilder()
+            .expireAfterWrite(REMOVED_RETENTION)
+            .build();
+
+    /**
+     * A pending or accepted relation between two users
+     *
+     * @param friendshipId ID of the friendship row
+     * @param senderId     ID of the user who sent the request
+     * @param receiverId   ID of the user who received the request
+     * @param status       PENDING or ACCEPTED
+     */
+    public record Edge(Long friendshipId, Long senderId, Long receiverId, FriendshipStatus status) {
+
+        public long otherUser(long userId) {
+            return senderId == userId ? receiverId : senderId;
+        }
+
+        public boolean isIncomingFor(long userId) {
+            return status == FriendshipStatus.PENDING && receiverId == userId;
+        }
+    }
+
+    /**
+     * A suggested user and the number of friends in common with the user the suggestion is for
+     */
+    public record Suggestion(long userId, int mutualFriends) {
+    }
+
+    private record Node(long[] friends, long[] pending) {
+    }
+
+    private record Pair(long low, long high) {
+        static Pair of(long a, long b) {
+            return a < b ? new Pair(a, b) : new Pair(b, a);
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void run(ApplicationArguments args) {
+        reload();
+    }
+
+    /**
+     * Rebuilds the whole index from the pending and accepted friendships in the database.
+     */
+    @Transactional(readOnly = true)
+    public synchronized void reload() {
+        long start = System.nanoTime();
+        Map<Long, Node> loadedNodes = new ConcurrentHashMap<>();
+        Map<Pair, Edge> loadedEdges = new ConcurrentHashMap<>();
+        try (Stream<Edge> active = friendshipRepository.streamActiveEdges()) {
+            active.forEach(edge -> link(loadedNodes, loadedEdges, edge));
+        }
+        nodes = loadedNodes;
+        edges = loadedEdges;
+        mutualFriendCounts = newMutualFriendCounts();
+        log.info("Friend graph loaded with {} users and {} relations in {} ms",
+                loadedNodes.size(), loadedEdges.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /* ************************ READS ********************** */
+
+    /**
+     * @param userId ID of the user
+     * @return sorted ids of the user's accepted friends, must not be modified
+     */
+    public long[] friendsOf(long userId) {
+        return nodes.getOrDefault(userId, EMPTY_NODE).friends();
+    }
+
+    public boolean areFriends(long userId, long otherUserId) {
+        return LongArrays.contains(friendsOf(userId), otherUserId);
+    }
+
+    /**
+     * @param userId      ID of one user
+     * @param otherUserId ID of the other user
+     * @return sorted ids of the friends both users have in common
+     */
+    public long[] mutualFriends(long userId, long otherUserId) {
+        return LongArrays.intersect(friendsOf(userId), friendsOf(otherUserId));
+    }
+
+    public int mutualFriendCount(long userId, long otherUserId) {
+        return LongArrays.intersectionSize(friendsOf(userId), friendsOf(otherUserId));
+    }
+
+    /**
+     * Finds the shortest chain of friendships between two users with a bidirectional breadth-first search.
+     * Memory is bounded by {@code app.friends.path-max-visited}; a search that would visit more users gives up.
+     *
+     * @param userId      ID of the first user
+     * @param otherUserId ID of the last user
+     * @param maxDepth    maximum number of friendships in the path
+     * @return user ids from the first to the last user, or null if there is no path within maxDepth
+     */
+    public long[] shortestPath(long userId, long otherUserId, int maxDepth) {
+        return FriendPathFinder.find(this::friendsOf, userId, otherUserId, maxDepth, pathMaxVisited);
+    }
+
+    /**
+     * Checks whether two users are at most the given number of friendships apart.
+     * One and two hops are answered by a set lookup and an intersection, longer distances by a search.
+     *
+     * @param userId      ID of one user
+     * @param otherUserId ID of the other user
+     * @param hops        maximum distance
+     * @return true if the users are the same user or within hops of each other
+     */
+    public boolean isWithinHops(long userId, long otherUserId, int hops) {
+        if (userId == otherUserId) {
+            return true;
+        }
+        if (hops >= 1 && areFriends(userId, otherUserId)) {
+            return true;
+        }
+        if (hops >= 2 && mutualFriendCount(userId, otherUserId) > 0) {
+            return true;
+        }
+        return hops > 2 && shortestPath(userId, otherUserId, hops) != null;
+    }
+
+    /**
+     * Reads "people you may know" for a user: friends of friends ranked by the number of mutual friends,
+     * then by user id. Existing friends and users with a pending request in either direction are skipped.
+     * Only the best app.friends.suggestions.per-user candidates are kept per user, see {@link MutualFriendCounts}.
+     *
+     * @param userId ID of the user to suggest friends for
+     * @param after  last suggestion of the previous page, null for the first page
+     * @param limit  maximum number of suggestions
+     * @return up to limit suggestions in rank order
+     */
+    public List<Suggestion> suggestionsFor(long userId, Suggestion after, int limit) {
+        Node node = nodes.getOrDefault(userId, EMPTY_NODE);
+        return mutualFriendCounts.candidates(userId, after, limit,
+                candidate -> LongArrays.contains(node.friends(), candidate) || LongArrays.contains(node.pending(), candidate));
+    }
+
+    /**
+     * @param userId      ID of one user
+     * @param otherUserId ID of the other user
+     * @return the pending or accepted relation between the users, if any
+     */
+    public Optional<Edge> edgeBetween(long userId, long otherUserId) {
+        return Optional.ofNullable(edges.get(Pair.of(userId, otherUserId)));
+    }
+
+    /**
+     * @param userId ID of the user
+     * @return all pending requests the user has sent or received
+     */
+    public List<Edge> pendingEdgesOf(long userId) {
+        return pendingEdgesOf(userId, null, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Reads a page of a user's friends, ordered by friend id.
+     *
+     * @param userId ID of the user
+     * @param after  last friend id of the previous page, null for the first page
+     * @param limit  maximum number of ids
+     * @return sorted friend ids after the given id
+     */
+    public long[] friendsOf(long userId, Long after, int limit) {
+        return LongArrays.page(friendsOf(userId), after, limit);
+    }
+
+    /**
+     * Reads a page of a user's pending requests, ordered by the id of the other user.
+     *
+     * @param userId ID of the user
+     * @param after  other user id of the last request on the previous page, null for the first page
+     * @param limit  maximum number of requests
+     * @return pending requests the user has sent or received
+     */
+    public List<Edge> pendingEdgesOf(long userId, Long after, int limit) {
+        long[] pending = LongArrays.page(nodes.getOrDefault(userId, EMPTY_NODE).pending(), after, limit);
+        List<Edge> result = new ArrayList<>(pending.length);
+        for (long other : pending) {
+            Edge edge = edges.get(Pair.of(userId, other));
+            if (edge != null) {
+                result.add(edge);
+            }
+        }
+        return result;
+    }
+
+    /* ************************ WRITES ********************** */
+
+    /**
+     * Records a new pending request once the current transaction commits.
+     */
+    public void requestSent(Long friendshipId, Long senderId, Long receiverId) {
+        AfterCommit.run(() -> apply(new Edge(friendshipId, senderId, receiverId, FriendshipStatus.PENDING)));
+    }
+
+    /**
+     * Records an accepted request once the current transaction commits.
+     */
+    public void requestAccepted(Long friendshipId, Long senderId, Long receiverId) {
+        AfterCommit.run(() -> apply(new Edge(friendshipId, senderId, receiverId, FriendshipStatus.ACCEPTED)));
+    }
+
+    /**
+     * Removes the relation of a friendship row between two users once the current transaction commits.
+     */
+    public void removed(Long friendshipId, Long userId, Long otherUserId) {
+        AfterCommit.run(() -> unlink(friendshipId, userId, otherUserId));
+    }
+
+    synchronized void apply(Edge edge) {
+        if (isStale(edge)) {
+            log.debug("Ignoring stale {} update for friendship with id={}", edge.status(), edge.friendshipId());
+            return;
+        }
+        boolean friendshipChanged = link(nodes, edges, edge);
+        mutualFriendCounts.relationChanged(edge.senderId(), edge.receiverId(), friendshipChanged);
+    }
+
+    synchronized void unlink(long friendshipId, long userId, long otherUserId) {
+        removedFriendships.put(friendshipId, Boolean.TRUE);
+        Pair pair = Pair.of(userId, otherUserId);
+        Edge edge = edges.get(pair);
+        // A newer row for the pair may already be applied; only the removed row itself is unlinked
+        if (edge == null || edge.friendshipId() != friendshipId) {
+            return;
+        }
+        edges.remove(pair);
+        nodes.computeIfPresent(userId, (id, node) -> new Node(
+                LongArrays.remove(node.friends(), otherUserId), LongArrays.remove(node.pending(), otherUserId)));
+        nodes.computeIfPresent(otherUserId, (id, node) -> new Node(
+                LongArrays.remove(node.friends(), userId), LongArrays.remove(node.pending(), userId)));
+        // Friends of both users are read after the removal; the other user is dropped by id either way
+        mutualFriendCounts.relationChanged(userId, otherUserId, edge.status() == FriendshipStatus.ACCEPTED);
+    }
+
+    /**
+     * Checks whether an update arrived after a later change of the same row, or after a newer row for the pair.
+     */
+    private boolean isStale(Edge edge) {
+        if (removedFriendships.getIfPresent(edge.friendshipId()) != null) {
+            return true;
+        }
+        Edge current = edges.get(Pair.of(edge.senderId(), edge.receiverId()));
+        if (current == null) {
+            return false;
+        }
+        if (current.friendshipId() > edge.friendshipId()) {
+            return true;
+        }
+        return current.friendshipId().equals(edge.friendshipId())
+                && current.status() == FriendshipStatus.ACCEPTED && edge.status() == FriendshipStatus.PENDING;
+    }
+
+    /**
+     * Adds or updates the relation of an edge.
+     *
+     * @return true if an accepted friendship was added or removed
+     */
+    private static boolean link(Map<Long, Node> nodes, Map<Pair, Edge> edges, Edge edge) {
+        long sender = edge.senderId();
+        long receiver = edge.receiverId();
+        Edge previous = edges.put(Pair.of(sender, receiver), edge);
+        boolean wasAccepted = previous != null && previous.status() == FriendshipStatus.ACCEPTED;
+        boolean accepted = edge.status() == FriendshipStatus.ACCEPTED;
+        nodes.compute(sender, (id, node) -> withRelation(node, receiver, accepted));
+        nodes.compute(receiver, (id, node) -> withRelation(node, sender, accepted));
+        return accepted != wasAccepted;
+    }
+
+    private MutualFriendCounts newMutualFriendCounts() {
+        return new MutualFriendCounts(this::friendsOf, userId -> nodes.getOrDefault(userId, EMPTY_NODE).pending(),
+                suggestionsPerUser, suggestionsHubDegree, suggestionsMaxScanned, suggestionsCachedUsers);
+    }
+
+    private static Node withRelation(Node node, long otherUserId, boolean accepted) {
+        Node current = node != null ? node : EMPTY_NODE;
+        if (accepted) {
+            return new Node(LongArrays.insert(current.friends(), otherUserId), LongArrays.remove(current.pending(), otherUserId));
+        }
+        return new Node(LongArrays.remove(current.friends(), otherUserId), LongArrays.insert(current.pending(), otherUserId));
+    }
+}
@@ -0,0 +1,81 @@
+package se.jensen.johanna.socialapp.index;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongFunction;
+
+/**
+ * Bidirectional breadth-first search for the shortest path between two users.
+ * <p>
+ * Searches from both ends and always expands one whole level of the smaller frontier, so the number
+ * of visited users grows with roughly the square root of a one-sided search. The search stops at the
+ * first level where the two sides meet, when the path would exceed the maximum depth,
+ * or when more than the allowed number of users has been visited.
+ */
+final class FriendPathFinder {
+    private static final long NO_PARENT = Long.MIN_VALUE;
+
+    private FriendPathFinder() {
+    }
+
+    /**
+     * @param neighbours returns the sorted friend ids of a user
+     * @param from       ID of the first user
+     * @param to         ID of the last user
+     * @param maxDepth   maximum number of friendships in the path
+     * @param maxVisited maximum number of users to visit before giving up
+     * @return user ids from first to last user, or null if no path was found within the limits
+     */
+    static long[] find(LongFunction<long[]> neighbours, long from, long to, int maxDepth, int maxVisited) {
+        if (from == to) {
+            return new long[]{from};
+        }
+        // Parent of every visited user, pointing back towards the side's start
+        Map<Long, Long> forwardParents = new HashMap<>();
+        Map<Long, Long> backwardParents = new HashMap<>();
+        forwardParents.put(from, NO_PARENT);
+        backwardParents.put(to, NO_PARENT);
+        ArrayDeque<Long> forward = new ArrayDeque<>(List.of(from));
+        ArrayDeque<Long> backward = new ArrayDeque<>(List.of(to));
+
+        for (int depth = 0; depth < maxDepth && !forward.isEmpty() && !backward.isEmpty(); depth++) {
+            boolean expandForward = forward.size() <= backward.size();
+            ArrayDeque<Long> frontier = expandForward ? forward : backward;
+            Map<Long, Long> parents = expandForward ? forwardParents : backwardParents;
+            Map<Long, Long> otherParents = expandForward ? backwardParents : forwardParents;
+
+            int levelSize = frontier.size();
+            for (int i = 0; i < levelSize; i++) {
+                long user = frontier.poll();
+                for (long friend : neighbours.apply(user)) {
+                    if (parents.containsKey(friend)) {
+                        continue;
+                    }
+                    parents.put(friend, user);
+                    if (otherParents.containsKey(friend)) {
+                        return join(friend, forwardParents, backwardParents);
+                    }
+                    if (forwardParents.size() + backwardParents.size() > maxVisited) {
+                        return null;
+                    }
+                    frontier.add(friend);
+                }
+            }
+        }
+        return null;
+    }
+
+    private static long[] join(long meeting, Map<Long, Long> forwardParents, Map<Long, Long> backwardParents) {
+        List<Long> path = new ArrayList<>();
+        for (long user = meeting; user != NO_PARENT; user = forwardParents.get(user)) {
+            path.add(0, user);
+        }
+        for (long user = backwardParents.get(meeting); user != NO_PARENT; user = backwardParents.get(user)) {
+            path.add(user);
+        }
+        return path.stream().mapToLong(Long::longValue).toArray();
+    }
+}
@@ -0,0 +1,117 @@
+package se.jensen.johanna.socialapp.index;
+
+import java.util.Arrays;
+
+/**
+ * Operations on sorted, duplicate-free {@code long[]} sets.
+ * Arrays are treated as immutable: every update returns a new array, so readers can use
+ * a published array without locking while a writer replaces it.
+ */
+final class LongArrays {
+    static final long[] EMPTY = new long[0];
+
+    private LongArrays() {
+    }
+
+    static boolean contains(long[] set, long value) {
+        return Arrays.binarySearch(set, value) >= 0;
+    }
+
+    static long[] insert(long[] set, long value) {
+        int index = Arrays.binarySearch(set, value);
+        if (index >= 0) {
+            return set;
+        }
+        int insertAt = -index - 1;
+        long[] result = new long[set.length + 1];
+        System.arraycopy(set, 0, result, 0, insertAt);
+        result[insertAt] = value;
+        System.arraycopy(set, insertAt, result, insertAt + 1, set.length - insertAt);
+        return result;
+    }
+
+    static long[] remove(long[] set, long value) {
+        int index = Arrays.binarySearch(set, value);
+        if (index < 0) {
+            return set;
+        }
+        if (set.length == 1) {
+            return EMPTY;
+        }
+        long[] result = new long[set.length - 1];
+        System.arraycopy(set, 0, result, 0, index);
+        System.arraycopy(set, index + 1, result, index, set.length - index - 1);
+        return result;
+    }
+
+    /**
+     * Reads a page of a set in ascending order.
+     *
+     * @param after last value of the previous page, exclusive, or null for the first page
+     * @param limit maximum number of values
+     */
+    static long[] page(long[] set, Long after, int limit) {
+        int from = 0;
+        if (after != null) {
+            int index = Arrays.binarySearch(set, after);
+            from = index >= 0 ? index + 1 : -index - 1;
+        }
+        return Arrays.copyOfRange(set, from, (int) Math.min(set.length, (long) from + Math.max(limit, 0)));
+    }
+
+    /**
+     * Intersects two sets. Uses a linear merge when the sets are of similar size, and a binary search
+     * of the smaller set in the larger one when they are not, so a small set against a huge one stays cheap.
+     */
+    static long[] intersect(long[] a, long[] b) {
+        long[] result = new long[Math.min(a.length, b.length)];
+        int count = intersect(a, b, result);
+        return count == result.length ? result : Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Counts the common values of two sets without allocating.
+     */
+    static int intersectionSize(long[] a, long[] b) {
+        return intersect(a, b, null);
+    }
+
+    private static int intersect(long[] a, long[] b, long[] out) {
+        long[] small = a.length <= b.length ? a : b;
+        long[] large = small == a ? b : a;
+        int count = 0;
+        if (small.length * 32L < large.length) {
+            int from = 0;
+            for (long value : small) {
+                int index = Arrays.binarySearch(large, from, large.length, value);
+                if (index >= 0) {
+                    if (out != null) {
+                        out[count] = value;
+                    }
+                    count++;
+                    from = index + 1;
+                } else {
+                    from = -index - 1;
+                }
+            }
+            return count;
+        }
+        int i = 0;
+        int j = 0;
+        while (i < small.length && j < large.length) {
+            if (small[i] < large[j]) {
+                i++;
+            } else if (small[i] > large[j]) {
+                j++;
+            } else {
+                if (out != null) {
+                    out[count] = small[i];
+                }
+                count++;
+                i++;
+                j++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,221 @@
+package se.jensen.johanna.socialapp.index;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import se.jensen.johanna.socialapp.index.FriendGraph.Suggestion;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.LongFunction;
+import java.util.function.LongPredicate;
+
+/**
+ * Top friend-of-friend candidates per user, ranked by the number of mutual friends.
+ * <p>
+ * Only the best {@code perUser} candidates of a user are kept, as a pair of primitive arrays in rank order.
+ * A user's list is computed from the friend graph the first time it is read and kept until a change in the
+ * user's 2-hop neighbourhood drops it, so a request for a user with an up-to-date list costs no traversal.
+ * <p>
+ * Memory and time are bounded instead of growing with the sum of squared degrees:
+ * <ul>
+ *     <li>at most {@code cachedUsers} lists of {@code perUser} entries are held, about 12 bytes per entry</li>
+ *     <li>friends with more than {@code hubDegree} friends are not followed when looking for candidates,
+ *     so a popular user does not make all their friends candidates of each other</li>
+ *     <li>computing one list looks at no more than {@code maxScanned} friend-of-friend entries</li>
+ * </ul>
+ * Candidates found through hubs only, or past the scan limit, are missed. The mutual friend count
+ * shown for a kept candidate is exact, hubs included. Thread-safe; the lists themselves are immutable.
+ */
+final class MutualFriendCounts {
+
+    // Highest count first, then lowest user id
+    static final Comparator<Suggestion> RANK = Comparator.comparingInt(Suggestion::mutualFriends).reversed()
+            .thenComparingLong(Suggestion::userId);
+
+    private final LongFunction<long[]> friendsOf;
+    private final LongFunction<long[]> pendingOf;
+    private final int perUser;
+    private final int hubDegree;
+    private final int maxScanned;
+    private final Cache<Long, Ranked> lists;
+
+    // Candidate ids and their mutual friend counts, in rank order
+    private record Ranked(long[] userIds, int[] mutualFriends) {
+    }
+
+    MutualFriendCounts(LongFunction<long[]> friendsOf, LongFunction<long[]> pendingOf,
+                       int perUser, int hubDegree, int maxScanned, long cachedUsers) {
+        this.friendsOf = friendsOf;
+        this.pendingOf = pendingOf;
+        this.perUser = perUser;
+        this.hubDegree = hubDegree;
+        this.maxScanned = maxScanned;
+        this.lists = Caffeine.newBuilder().maximumSize(cachedUsers).build();
+    }
+
+    /**
+     * Drops the lists a changed relation between a and b can affect. A pending request only changes which
+     * candidates a and b exclude; an accepted friendship added or removed also changes the candidates
+     * of everyone who reaches the other user through a or b.
+     *
+     * @param friendshipChanged true if an accepted friendship was added or removed
+     */
+    void relationChanged(long a, long b, boolean friendshipChanged) {
+        lists.invalidate(a);
+        lists.invalidate(b);
+        if (friendshipChanged) {
+            invalidateFriendsOf(a);
+            invalidateFriendsOf(b);
+        }
+    }
+
+    /**
+     * Reads candidates for a user in rank order.
+     *
+     * @param userId  ID of the user to suggest friends for
+     * @param after   last candidate of the previous page, null for the first page
+     * @param limit   maximum number of candidates to return
+     * @param exclude users to skip, e.g. existing friends and pending requests
+     * @return up to limit candidates ranked by mutual friends
+     */
+    List<Suggestion> candidates(long userId, Suggestion after, int limit, LongPredicate exclude) {
+        Ranked ranked = lists.get(userId, this::compute);
+        List<Suggestion> result = new ArrayList<>(Math.min(limit, ranked.userIds().length));
+        for (int i = 0; i < ranked.userIds().length && result.size() < limit; i++) {
+            Suggestion candidate = new Suggestion(ranked.userIds()[i], ranked.mutualFriends()[i]);
+            if ((after == null || RANK.compare(candidate, after) > 0) && !exclude.test(candidate.userId())) {
+                result.add(candidate);
+            }
+        }
+        return result;
+    }
+
+    private void invalidateFriendsOf(long userId) {
+        long[] friends = friendsOf.apply(userId);
+        // A hub is not followed when computing lists, so its friends' lists do not depend on it
+        if (friends.length > hubDegree) {
+            return;
+        }
+        for (long friend : friends) {
+            lists.invalidate(friend);
+        }
+    }
+
+    private Ranked compute(long userId) {
+        long[] friends = friendsOf.apply(userId);
+        long[] pending = pendingOf.apply(userId);
+        LongIntCounter counter = new LongIntCounter(Math.min(maxScanned, 1024));
+        int scanned = 0;
+        for (long friend : friends) {
+            long[] friendsOfFriend = friendsOf.apply(friend);
+            if (friendsOfFriend.length > hubDegree) {
+                continue;
+            }
+            for (long candidate : friendsOfFriend) {
+                if (candidate != userId && !LongArrays.contains(friends, candidate) && !LongArrays.contains(pending, candidate)) {
+                    counter.increment(candidate);
+                }
+            }
+            scanned += friendsOfFriend.length;
+            if (scanned >= maxScanned) {
+                break;
+            }
+        }
+
+        // Keep the best candidates by the counts seen, then rank them by their exact mutual friend count
+        PriorityQueue<Suggestion> best = new PriorityQueue<>(perUser + 1, RANK.reversed());
+        counter.forEach((candidate, count) -> {
+            best.add(new Suggestion(candidate, count));
+            if (best.size() > perUser) {
+                best.poll();
+            }
+        });
+        Suggestion[] top = best.stream()
+                .map(s -> new Suggestion(s.userId(), LongArrays.intersectionSize(friends, friendsOf.apply(s.userId()))))
+                .sorted(RANK)
+                .toArray(Suggestion[]::new);
+
+        long[] userIds = new long[top.length];
+        int[] mutualFriends = new int[top.length];
+        for (int i = 0; i < top.length; i++) {
+            userIds[i] = top[i].userId();
+            mutualFriends[i] = top[i].mutualFriends();
+        }
+        return new Ranked(userIds, mutualFriends);
+    }
+
+    /**
+     * Open-addressing map from user id to count, used as scratch space while computing one list.
+     */
+    private static final class LongIntCounter {
+        private static final long FREE = Long.MIN_VALUE;
+
+        private long[] keys;
+        private int[] values;
+        private int size;
+
+        LongIntCounter(int expected) {
+            int capacity = Integer.highestOneBit(Math.max(4, expected * 2 - 1)) << 1;
+            keys = new long[capacity];
+            values = new int[capacity];
+            Arrays.fill(keys, FREE);
+        }
+
+        void increment(long key) {
+            int mask = keys.length - 1;
+            int i = slot(key, mask);
+            while (keys[i] != FREE && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            if (keys[i] == FREE) {
+                keys[i] = key;
+                if (++size * 2 > keys.length) {
+                    values[i] = 1;
+                    grow();
+                    return;
+                }
+            }
+            values[i]++;
+        }
+
+        void forEach(LongIntConsumer consumer) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != FREE) {
+                    consumer.accept(keys[i], values[i]);
+                }
+            }
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new int[oldValues.length * 2];
+            Arrays.fill(keys, FREE);
+            int mask = keys.length - 1;
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldKeys[j] != FREE) {
+                    int i = slot(oldKeys[j], mask);
+                    while (keys[i] != FREE) {
+                        i = (i + 1) & mask;
+                    }
+                    keys[i] = oldKeys[j];
+                    values[i] = oldValues[j];
+                }
+            }
+        }
+
+        private static int slot(long key, int mask) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32)) & mask;
+        }
+    }
+
+    @FunctionalInterface
+    private interface LongIntConsumer {
+        void accept(long key, int value);
+    }
+}
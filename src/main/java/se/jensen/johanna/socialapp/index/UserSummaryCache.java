@@ -0,0 +1,94 @@
+package se.jensen.johanna.socialapp.index;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import se.jensen.johanna.socialapp.dto.UserListDTO;
+import se.jensen.johanna.socialapp.dto.UserSummaryDTO;
+import se.jensen.johanna.socialapp.repository.UserRepository;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Read-through cache of {@link UserSummaryDTO} by userId, shared by profile views, mappers and bulk lookups.
+ * Misses are loaded together with a single {@code IN} query. Entries are bounded in number, expire after a TTL
+ * and are invalidated when a user changes, once the change is committed.
+ * Hits, misses and evictions are published as the {@value #METRIC_NAME} cache metrics.
+ */
+@Component
+@RequiredArgsConstructor
+public class UserSummaryCache {
+    static final String METRIC_NAME = "users.summary";
+
+    private final UserRepository userRepository;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.users.summary-cache.max-size:100000}")
+    private long maxSize = 100_000;
+
+    @Value("${app.users.summary-cache.ttl:10m}")
+    private Duration ttl = Duration.ofMinutes(10);
+
+    private Cache<Long, UserSummaryDTO> cache;
+
+    @PostConstruct
+    void init() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, METRIC_NAME);
+    }
+
+    /**
+     * Returns a single user, loading it if it is not cached.
+     *
+     * @param userId id of the user
+     * @return the user, or empty if no user has the id
+     */
+    public Optional<UserSummaryDTO> get(Long userId) {
+        return Optional.ofNullable(getAllSummaries(List.of(userId)).get(userId));
+    }
+
+    /**
+     * Returns the users with the given ids, loading the ones not cached in one query.
+     * Ids without a user are left out of the result and are not cached.
+     *
+     * @param userIds ids to look up
+     * @return map from userId to {@link UserListDTO}
+     */
+    public Map<Long, UserListDTO> getAll(Collection<Long> userIds) {
+        Map<Long, UserListDTO> users = new LinkedHashMap<>();
+        getAllSummaries(userIds).forEach((userId, user) ->
+                users.put(userId, new UserListDTO(user.userId(), user.username(), user.profileImagePath())));
+        return users;
+    }
+
+    /**
+     * Drops a user from the cache once the current transaction commits.
+     */
+    public void invalidate(Long userId) {
+        AfterCommit.run(() -> cache.invalidate(userId));
+    }
+
+    private Map<Long, UserSummaryDTO> getAllSummaries(Collection<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return Map.of();
+        }
+        return cache.getAll(userIds, missing -> userRepository.findUserSummariesByIds(List.copyOf(missing)).stream()
+                .collect(Collectors.toMap(UserSummaryDTO::userId, Function.identity())));
+    }
+}
@@ -0,0 +1,173 @@
+package se.jensen.johanna.socialapp.index;
+
+import se.jensen.johanna.socialapp.dto.UserListDTO;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Immutable users sorted by lowercase username and then user id, packed into parallel primitive arrays.
+ * <p>
+ * Usernames and profile image paths are stored as UTF-8 in one byte array each, addressed by offset,
+ * so an entry costs its id, two offsets and the bytes of its strings, about 16 bytes plus the text,
+ * instead of a map node, a key and a record. Prefix lookups are a binary search over the sorted entries.
+ * An empty image path is stored like a missing one and read back as null.
+ */
+final class UsernameArray {
+    static final UsernameArray EMPTY = new Builder(0).build();
+
+    private final long[] userIds;
+    private final int[] nameOffsets;
+    private final byte[] names;
+    private final int[] imageOffsets;
+    private final byte[] images;
+
+    private UsernameArray(long[] userIds, int[] nameOffsets, byte[] names, int[] imageOffsets, byte[] images) {
+        this.userIds = userIds;
+        this.nameOffsets = nameOffsets;
+        this.names = names;
+        this.imageOffsets = imageOffsets;
+        this.images = images;
+    }
+
+    /**
+     * Sort key of a user: lowercase username, a separator that sorts before any username character, and the id.
+     */
+    static String key(String username, long userId) {
+        return username.toLowerCase(Locale.ROOT) + '\u0000' + userId;
+    }
+
+    int size() {
+        return userIds.length;
+    }
+
+    long userId(int index) {
+        return userIds[index];
+    }
+
+    String key(int index) {
+        return key(username(index), userIds[index]);
+    }
+
+    /**
+     * @return true if the lowercase username at index starts with the lowercase prefix
+     */
+    boolean startsWith(int index, String prefix) {
+        return username(index).toLowerCase(Locale.ROOT).startsWith(prefix);
+    }
+
+    /**
+     * @param prefix lowercase prefix
+     * @return index of the first entry whose lowercase username is not less than the prefix
+     */
+    int lowerBound(String prefix) {
+        int low = 0;
+        int high = userIds.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (username(mid).toLowerCase(Locale.ROOT).compareTo(prefix) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    UserListDTO user(int index) {
+        int imageLength = imageOffsets[index + 1] - imageOffsets[index];
+        String image = imageLength == 0 ? null : new String(images, imageOffsets[index], imageLength, StandardCharsets.UTF_8);
+        return new UserListDTO(userIds[index], username(index), image);
+    }
+
+    /**
+     * @return bytes held by the arrays, excluding array headers
+     */
+    long sizeInBytes() {
+        return 8L * userIds.length + 4L * (nameOffsets.length + imageOffsets.length) + names.length + images.length;
+    }
+
+    private String username(int index) {
+        return new String(names, nameOffsets[index], nameOffsets[index + 1] - nameOffsets[index], StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Appends users in key order and packs them. Not thread-safe.
+     */
+    static final class Builder {
+        private long[] userIds;
+        private int[] nameOffsets;
+        private byte[] names;
+        private int[] imageOffsets;
+        private byte[] images;
+        private int size;
+        private int nameLength;
+        private int imageLength;
+
+        Builder(int expected) {
+            int capacity = Math.max(expected, 16);
+            userIds = new long[capacity];
+            nameOffsets = new int[capacity + 1];
+            imageOffsets = new int[capacity + 1];
+            names = new byte[capacity * 12];
+            images = new byte[capacity * 16];
+        }
+
+        static long sizeOf(UserListDTO user) {
+            return 16L + utf8Length(user.username()) + utf8Length(user.profileImagePath());
+        }
+
+        /**
+         * @return bytes the packed arrays would hold if built now
+         */
+        long sizeInBytes() {
+            return 16L * size + 8 + nameLength + imageLength;
+        }
+
+        void add(UserListDTO user) {
+            byte[] name = user.username().getBytes(StandardCharsets.UTF_8);
+            byte[] image = user.profileImagePath() == null ? new byte[0] : user.profileImagePath().getBytes(StandardCharsets.UTF_8);
+            append(user.userId(), name, 0, name.length, image, 0, image.length);
+        }
+
+        void add(UsernameArray source, int index) {
+            int nameFrom = source.nameOffsets[index];
+            int imageFrom = source.imageOffsets[index];
+            append(source.userIds[index], source.names, nameFrom, source.nameOffsets[index + 1] - nameFrom,
+                    source.images, imageFrom, source.imageOffsets[index + 1] - imageFrom);
+        }
+
+        UsernameArray build() {
+            return new UsernameArray(Arrays.copyOf(userIds, size), Arrays.copyOf(nameOffsets, size + 1),
+                    Arrays.copyOf(names, nameLength), Arrays.copyOf(imageOffsets, size + 1), Arrays.copyOf(images, imageLength));
+        }
+
+        private void append(long userId, byte[] name, int nameFrom, int nameBytes, byte[] image, int imageFrom, int imageBytes) {
+            if (size == userIds.length) {
+                int capacity = userIds.length * 2;
+                userIds = Arrays.copyOf(userIds, capacity);
+                nameOffsets = Arrays.copyOf(nameOffsets, capacity + 1);
+                imageOffsets = Arrays.copyOf(imageOffsets, capacity + 1);
+            }
+            names = ensureCapacity(names, nameLength + nameBytes);
+            images = ensureCapacity(images, imageLength + imageBytes);
+            System.arraycopy(name, nameFrom, names, nameLength, nameBytes);
+            System.arraycopy(image, imageFrom, images, imageLength, imageBytes);
+            nameLength += nameBytes;
+            imageLength += imageBytes;
+            userIds[size] = userId;
+            size++;
+            nameOffsets[size] = nameLength;
+            imageOffsets[size] = imageLength;
+        }
+
+        private static byte[] ensureCapacity(byte[] array, int needed) {
+            return needed <= array.length ? array : Arrays.copyOf(array, Math.max(needed, array.length * 2));
+        }
+
+        private static int utf8Length(String value) {
+            return value == null ? 0 : value.getBytes(StandardCharsets.UTF_8).length;
+        }
+    }
+}
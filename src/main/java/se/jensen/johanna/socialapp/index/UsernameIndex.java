@@ -0,0 +1,249 @@
+package se.jensen.johanna.socialapp.index;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import se.jensen.johanna.socialapp.dto.UserListDTO;
+import se.jensen.johanna.socialapp.repository.UserRepository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * In-process prefix index of usernames for typeahead.
+ * <p>
+ * Users are held in a {@link UsernameArray}: parallel arrays sorted by lowercase username and user id,
+ * with the {@link UserListDTO} fields packed as UTF-8, so an entry costs about 16 bytes plus its text and the
+ * top matches for a prefix are found with one binary search. Changes since the array was built are kept in a
+ * small sorted overlay that lookups merge in; once it holds {@value #MAX_PENDING_CHANGES} changes it is folded
+ * into a new array. Readers use an immutable snapshot and never lock.
+ * The index is loaded at startup and kept current by {@code UserService}, applied after commit.
+ * <p>
+ * Memory is limited by {@code app.users.typeahead.max-memory-mb}; the default of 128 MB holds well over a million
+ * users with typical usernames and image paths. When the budget is reached, new users are no longer indexed and
+ * {@link #isComplete()} turns false, so callers can fall back to the database.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class UsernameIndex implements ApplicationRunner {
+    static final int MAX_PENDING_CHANGES = 1024;
+    // Rough per-entry cost of a change in the overlay: tree map entry, key, record and id set entry
+    private static final int PENDING_OVERHEAD_BYTES = 200;
+
+    private final UserRepository userRepository;
+
+    @Value("${app.users.typeahead.max-memory-mb:128}")
+    private long maxMemoryMb = 128;
+
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+    private volatile boolean complete = true;
+
+    /**
+     * Sorted array plus the changes made since it was built.
+     *
+     * @param base    users when the array was last built
+     * @param hidden  ids whose entry in base was removed or replaced
+     * @param added   users added or replaced since, by sort key
+     * @param keys    sort key in added by user id
+     */
+    private record Snapshot(UsernameArray base, Set<Long> hidden, NavigableMap<String, UserListDTO> added,
+                            Map<Long, String> keys) {
+        static final Snapshot EMPTY = new Snapshot(UsernameArray.EMPTY, Set.of(), Collections.emptyNavigableMap(), Map.of());
+
+        int pendingChanges() {
+            return hidden.size() + added.size();
+        }
+
+        long sizeInBytes() {
+            return base.sizeInBytes() + (long) PENDING_OVERHEAD_BYTES * pendingChanges();
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void run(ApplicationArguments args) {
+        reload();
+    }
+
+    /**
+     * Rebuilds the index from all users in the database.
+     */
+    @Transactional(readOnly = true)
+    public synchronized void reload() {
+        long start = System.nanoTime();
+        List<Keyed> users = new ArrayList<>();
+        try (Stream<UserListDTO> all = userRepository.streamUserListDTOs()) {
+            all.forEach(user -> users.add(new Keyed(UsernameArray.key(user.username(), user.userId()), user)));
+        }
+        users.sort(Comparator.comparing(Keyed::key));
+
+        long budget = budgetBytes();
+        UsernameArray.Builder builder = new UsernameArray.Builder(users.size());
+        boolean allIndexed = true;
+        for (Keyed user : users) {
+            if (builder.sizeInBytes() + UsernameArray.Builder.sizeOf(user.user()) > budget) {
+                allIndexed = false;
+                break;
+            }
+            builder.add(user.user());
+        }
+        UsernameArray base = builder.build();
+        snapshot = new Snapshot(base, Set.of(), Collections.emptyNavigableMap(), Map.of());
+        complete = allIndexed;
+        if (!allIndexed) {
+            log.warn("Username index reached its memory budget of {} MB, {} of {} users are indexed",
+                    maxMemoryMb, base.size(), users.size());
+        }
+        log.info("Username index loaded with {} users, about {} KB, complete={} in {} ms",
+                base.size(), base.sizeInBytes() / 1024, complete, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Finds users whose username starts with the prefix, case-insensitive, in username order.
+     *
+     * @param prefix start of the username
+     * @param limit  maximum number of users
+     * @return up to limit matching users
+     */
+    public List<UserListDTO> findByPrefix(String prefix, int limit) {
+        Snapshot current = snapshot;
+        String from = normalize(prefix);
+        UsernameArray base = current.base();
+        Iterator<Map.Entry<String, UserListDTO>> added =
+                current.added().subMap(from, true, from + Character.MAX_VALUE, false).entrySet().iterator();
+        Map.Entry<String, UserListDTO> nextAdded = added.hasNext() ? added.next() : null;
+        int index = base.lowerBound(from);
+
+        List<UserListDTO> result = new ArrayList<>(limit);
+        while (result.size() < limit) {
+            while (index < base.size() && current.hidden().contains(base.userId(index))) {
+                index++;
+            }
+            boolean baseMatches = index < base.size() && base.startsWith(index, from);
+            if (!baseMatches && nextAdded == null) {
+                break;
+            }
+            if (nextAdded == null || baseMatches && base.key(index).compareTo(nextAdded.getKey()) < 0) {
+                result.add(base.user(index++));
+            } else {
+                result.add(nextAdded.getValue());
+                nextAdded = added.hasNext() ? added.next() : null;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return false if users were left out because the memory budget was reached
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Adds or replaces a user once the current transaction commits.
+     */
+    public void userSaved(UserListDTO user) {
+        AfterCommit.run(() -> put(user));
+    }
+
+    /**
+     * Removes a user once the current transaction commits.
+     */
+    public void userDeleted(Long userId) {
+        AfterCommit.run(() -> remove(userId));
+    }
+
+    synchronized void put(UserListDTO user) {
+        Snapshot current = snapshot;
+        if (current.sizeInBytes() + UsernameArray.Builder.sizeOf(user) + PENDING_OVERHEAD_BYTES > budgetBytes()) {
+            if (complete) {
+                log.warn("Username index reached its memory budget of {} MB, new users are not indexed", maxMemoryMb);
+            }
+            complete = false;
+            publish(without(current, user.userId()));
+            return;
+        }
+        Snapshot removed = without(current, user.userId());
+        NavigableMap<String, UserListDTO> added = new TreeMap<>(removed.added());
+        Map<Long, String> keys = new HashMap<>(removed.keys());
+        String key = UsernameArray.key(user.username(), user.userId());
+        added.put(key, user);
+        keys.put(user.userId(), key);
+        publish(new Snapshot(removed.base(), removed.hidden(), added, keys));
+    }
+
+    synchronized void remove(Long userId) {
+        publish(without(snapshot, userId));
+    }
+
+    // The snapshot with the user's current entry hidden or dropped; every base entry is hidden, as base has no id lookup
+    private static Snapshot without(Snapshot current, long userId) {
+        Set<Long> hidden = new HashSet<>(current.hidden());
+        hidden.add(userId);
+        String key = current.keys().get(userId);
+        if (key == null) {
+            return new Snapshot(current.base(), hidden, current.added(), current.keys());
+        }
+        NavigableMap<String, UserListDTO> added = new TreeMap<>(current.added());
+        Map<Long, String> keys = new HashMap<>(current.keys());
+        added.remove(key);
+        keys.remove(userId);
+        return new Snapshot(current.base(), hidden, added, keys);
+    }
+
+    // Publishes the snapshot, folding the overlay into a new array once it has grown large
+    private void publish(Snapshot next) {
+        if (next.pendingChanges() < MAX_PENDING_CHANGES) {
+            snapshot = next;
+            return;
+        }
+        UsernameArray base = next.base();
+        UsernameArray.Builder builder = new UsernameArray.Builder(base.size() + next.added().size());
+        Iterator<UserListDTO> added = next.added().values().iterator();
+        UserListDTO nextAdded = added.hasNext() ? added.next() : null;
+        for (int index = 0; index < base.size(); index++) {
+            if (next.hidden().contains(base.userId(index))) {
+                continue;
+            }
+            String key = base.key(index);
+            while (nextAdded != null && UsernameArray.key(nextAdded.username(), nextAdded.userId()).compareTo(key) < 0) {
+                builder.add(nextAdded);
+                nextAdded = added.hasNext() ? added.next() : null;
+            }
+            builder.add(base, index);
+        }
+        while (nextAdded != null) {
+            builder.add(nextAdded);
+            nextAdded = added.hasNext() ? added.next() : null;
+        }
+        snapshot = new Snapshot(builder.build(), Set.of(), Collections.emptyNavigableMap(), Map.of());
+    }
+
+    private long budgetBytes() {
+        return maxMemoryMb * 1024 * 1024;
+    }
+
+    private static String normalize(String username) {
+        return username.toLowerCase(Locale.ROOT);
+    }
+
+    private record Keyed(String key, UserListDTO user) {
+    }
+}
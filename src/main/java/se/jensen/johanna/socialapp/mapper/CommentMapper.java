@@ -4,24 +4,25 @@ import org.mapstruct.*;
 import se.jensen.johanna.socialapp.dto.*;
 import se.jensen.johanna.socialapp.model.Comment;
 
-@Mapper(componentModel = "spring", imports = {java.time.LocalDateTime.class})
+@Mapper(componentModel = "spring", uses = UserSummaryResolver.class, imports = {java.time.LocalDateTime.class})
 public interface CommentMapper {
 
     @Mapping(target = "updatedAt", ignore = true)
     Comment toComment(CommentRequest commentRequest);
 
     @Mapping(target = "userId", source = "user.userId")
-    @Mapping(target = "username", source = "user.username")
+    @Mapping(target = "username", source = "user", qualifiedByName = "username")
     @Mapping(target = "postId", source = "post.postId")
     CommentResponse toResponse(Comment comment);
 
     @Mapping(target = "parentId", source = "parent.commentId")
     @Mapping(target = "userId", source = "user.userId")
-    @Mapping(target = "username", source = "user.username")
+    @Mapping(target = "username", source = "user", qualifiedByName = "username")
     ReplyCommentResponse toReplyCommentResponse(Comment comment);
 
     @Mapping(target = "userId", source = "user.userId")
-    @Mapping(target = "username", source = "user.username")
+    @Mapping(target = "username", source = "user", qualifiedByName = "username")
+    @Mapping(target = "hasMoreReplies", ignore = true)
     CommentDTO toCommentDTO(Comment comment);
 
     @BeanMapping(nullValuePropertyMappingStrategy = NullValuePropertyMappingStrategy.IGNORE)
@@ -4,19 +4,19 @@ import org.mapstruct.*;
 import se.jensen.johanna.socialapp.dto.*;
 import se.jensen.johanna.socialapp.model.Post;
 
-@Mapper(componentModel = "spring", uses = CommentMapper.class, imports = {java.time.LocalDateTime.class})
+@Mapper(componentModel = "spring", uses = {CommentMapper.class, UserSummaryResolver.class}, imports = {java.time.LocalDateTime.class})
 public interface PostMapper {
 
 
     @Mapping(target = "userId", source = "user.userId")
-    @Mapping(target = "username", source = "user.username")
+    @Mapping(target = "username", source = "user", qualifiedByName = "username")
     PostResponseDTO toPostResponseDTO(Post post);
 
     UserPostDTO toUserPostDTO(Post post);
 
     @Mapping(target = "userId", source = "user.userId")
-    @Mapping(target = "username", source = "user.username")
-    @Mapping(target = "profileImagePath", source = "user.profileImagePath")
+    @Mapping(target = "username", source = "user", qualifiedByName = "username")
+    @Mapping(target = "profileImagePath", source = "user", qualifiedByName = "profileImagePath")
     PostDTO toPostDTO(Post post);
 
     /**
@@ -8,8 +8,13 @@ import se.jensen.johanna.socialapp.model.User;
 @Mapper(componentModel = "spring", uses = {PostMapper.class})
 public interface UserMapper {
 
+    @Mapping(target = "mutualFriendCount", ignore = true)
     UserDTO toUserDTO(User user);
 
+    UserDTO toUserDTO(User user, Integer mutualFriendCount);
+
+    UserDTO toUserDTO(UserSummaryDTO user, Integer mutualFriendCount);
+
     UserListDTO toUserListDTO(User user);
 
 
@@ -19,6 +24,8 @@ public interface UserMapper {
 
     MyDTO toMyDTO(User user);
 
+    MyDTO toMyDTO(UserSummaryDTO user);
+
     UpdateUserResponse toUpdateUserResponse(User user);
 
     @Mapping(target = "role", source = "role")
@@ -0,0 +1,44 @@
+package se.jensen.johanna.socialapp.mapper;
+
+import lombok.RequiredArgsConstructor;
+import org.hibernate.Hibernate;
+import org.mapstruct.Named;
+import org.springframework.stereotype.Component;
+import se.jensen.johanna.socialapp.dto.UserSummaryDTO;
+import se.jensen.johanna.socialapp.index.UserSummaryCache;
+import se.jensen.johanna.socialapp.model.User;
+
+import java.util.Optional;
+
+/**
+ * Resolves author info for the mappers. An author that is already loaded is read directly,
+ * a lazy proxy is answered from the {@link UserSummaryCache} so mapping a page does not load every author.
+ */
+@Component
+@RequiredArgsConstructor
+public class UserSummaryResolver {
+    private final UserSummaryCache userSummaryCache;
+
+    @Named("username")
+    public String username(User user) {
+        if (user == null) {
+            return null;
+        }
+        return Hibernate.isInitialized(user) ? user.getUsername()
+                : summaryOf(user).map(UserSummaryDTO::username).orElse(null);
+    }
+
+    @Named("profileImagePath")
+    public String profileImagePath(User user) {
+        if (user == null) {
+            return null;
+        }
+        return Hibernate.isInitialized(user) ? user.getProfileImagePath()
+                : summaryOf(user).map(UserSummaryDTO::profileImagePath).orElse(null);
+    }
+
+    // The id of a lazy proxy is known without initializing it
+    private Optional<UserSummaryDTO> summaryOf(User user) {
+        return userSummaryCache.get(user.getUserId());
+    }
+}
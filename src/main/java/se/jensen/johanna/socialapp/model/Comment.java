@@ -14,7 +14,11 @@ import java.util.List;
 @NoArgsConstructor
 @Getter
 @Setter
-@Table(name = "comments")
+@Table(name = "comments", indexes = {
+        @Index(name = "idx_comments_post_parent_created", columnList = "post_id, parent_id, createdAt, commentId"),
+        @Index(name = "idx_comments_parent_created", columnList = "parent_id, createdAt, commentId"),
+        @Index(name = "idx_comments_root_depth", columnList = "rootId, depth")
+})
 public class Comment {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -47,8 +51,21 @@ public class Comment {
     @OrderBy("createdAt ASC")
     private List<Comment> replies = new ArrayList<>();
 
+    /*
+     * Materialized path of the comment hierarchy.
+     * path holds the ids of all ancestors, e.g. "/12/40/" for a reply to comment 40 under main comment 12,
+     * so all descendants of a comment share the prefix path + commentId + "/".
+     * rootId is the main comment of the thread (null for main comments) and depth the number of ancestors.
+     */
+    @Column(length = 2000)
+    private String path = "/";
+
+    private Long rootId;
+
+    private Integer depth = 0;
+
     /**
-     * Sets parent and post for reply comment
+     * Sets parent, post and hierarchy path for reply comment
      *
      * @param reply Takes reply comment
      */
@@ -56,6 +73,18 @@ public class Comment {
         replies.add(reply);
         reply.setParent(this);
         reply.setPost(this.post);
+        reply.setPath(getSubtreePath());
+        reply.setRootId(this.rootId != null ? this.rootId : this.commentId);
+        reply.setDepth(this.depth + 1);
 
     }
+
+    /**
+     * Path prefix shared by all descendants of this comment
+     *
+     * @return path of this comment followed by its own id
+     */
+    public String getSubtreePath() {
+        return path + commentId + "/";
+    }
 }
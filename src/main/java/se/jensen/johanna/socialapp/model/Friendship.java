@@ -5,26 +5,50 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "friendships")
+@Table(name = "friendships",
+        uniqueConstraints = @UniqueConstraint(name = "uk_friendships_pair", columnNames = {"low_user_id", "high_user_id"}),
+        indexes = @Index(name = "idx_friendships_high_user", columnList = "high_user_id"))
 public class Friendship {
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long friendshipId;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "sender_id")
     private User sender;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "receiver_id")
     private User receiver;
 
+    // Read-only copies of the foreign keys, so ids can be compared and queried without loading the users
+    @Column(name = "sender_id", insertable = false, updatable = false)
+    private Long senderId;
+
+    @Column(name = "receiver_id", insertable = false, updatable = false)
+    private Long receiverId;
+
     @Enumerated(EnumType.STRING)
     private FriendshipStatus status = FriendshipStatus.PENDING;
 
     private LocalDateTime acceptedAt;
 
+    // Canonical (smallest id, largest id) pair, so there is at most one row per pair of users in either direction
+    @Column(name = "low_user_id")
+    private Long lowUserId;
+
+    @Column(name = "high_user_id")
+    private Long highUserId;
+
+    @PrePersist
+    void setCanonicalPair() {
+        Long senderId = sender.getUserId();
+        Long receiverId = receiver.getUserId();
+        this.lowUserId = Math.min(senderId, receiverId);
+        this.highUserId = Math.max(senderId, receiverId);
+    }
+
     /**
      * Updates the friendship status to ACCEPTED and records the current timestamp.
      * This should be called when a user accepts a friend request.
@@ -47,6 +71,10 @@ public class Friendship {
         this.sender = sender;
     }
 
+    public Long getSenderId() {
+        return senderId;
+    }
+
     public User getReceiver() {
         return receiver;
     }
@@ -55,6 +83,10 @@ public class Friendship {
         this.receiver = receiver;
     }
 
+    public Long getReceiverId() {
+        return receiverId;
+    }
+
     public FriendshipStatus getStatus() {
         return status;
     }
@@ -70,4 +102,12 @@ public class Friendship {
     public void setAcceptedAt(LocalDateTime acceptedAt) {
         this.acceptedAt = acceptedAt;
     }
+
+    public Long getLowUserId() {
+        return lowUserId;
+    }
+
+    public Long getHighUserId() {
+        return highUserId;
+    }
 }
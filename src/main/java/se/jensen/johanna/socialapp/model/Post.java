@@ -14,7 +14,10 @@ import java.util.List;
 @Getter
 @Setter
 @Entity
-@Table(name = "posts")
+@Table(name = "posts", indexes = {
+        @Index(name = "idx_posts_created", columnList = "createdAt DESC, postId DESC"),
+        @Index(name = "idx_posts_user_created", columnList = "user_id, createdAt DESC, postId DESC")
+})
 @NoArgsConstructor
 public class Post {
     @Id
@@ -8,7 +8,12 @@ import lombok.Setter;
 import java.time.Instant;
 
 @Entity
-@Table(name = "refresh_tokens")
+@Table(name = "refresh_tokens",
+        uniqueConstraints = @UniqueConstraint(name = "uk_refresh_tokens_user_device", columnNames = {"user_id", "device_id"}),
+        indexes = {
+                @Index(name = "idx_refresh_tokens_expiry", columnList = "expiryDate"),
+                @Index(name = "idx_refresh_tokens_previous", columnList = "previous_token")
+        })
 @NoArgsConstructor
 @Getter
 @Setter
@@ -17,13 +22,24 @@ public class RefreshToken {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long refreshTokenId;
 
-    @Column(nullable = false, unique = true)
-    private String token;
+    // SHA-256 hex of the token sent to the client, the token itself is never stored
+    @Column(name = "token", nullable = false, unique = true)
+    private String tokenHash;
 
-    @OneToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", referencedColumnName = "userId")
     private User user;
 
+    // One session per user and device, so logging in on one device keeps the others signed in
+    @Column(name = "device_id", length = 36)
+    private String deviceId;
+
+    // Hash of the token this one replaced, accepted for a short grace window after rotatedAt
+    @Column(name = "previous_token")
+    private String previousTokenHash;
+
+    private Instant rotatedAt;
+
     @Column(nullable = false)
     Instant expiryDate;
 
@@ -0,0 +1,42 @@
+package se.jensen.johanna.socialapp.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+import java.time.LocalDateTime;
+
+/**
+ * A post delivered to a user's home feed.
+ * Entries are written when a post is created (fan-out-on-write), so reading a feed
+ * is a single range scan over (owner_id, created_at) instead of a join over friendships and posts.
+ */
+@Entity
+@NoArgsConstructor
+@Getter
+@Setter
+@Table(name = "timeline_entries",
+        uniqueConstraints = @UniqueConstraint(name = "uk_timeline_owner_post", columnNames = {"owner_id", "post_id"}),
+        indexes = @Index(name = "idx_timeline_owner_created", columnList = "owner_id, created_at DESC, post_id DESC"))
+public class TimelineEntry {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long timelineEntryId;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "owner_id", nullable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private User owner;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "post_id", nullable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private Post post;
+
+    // Copy of the post's createdAt so the feed can be ordered without touching posts
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
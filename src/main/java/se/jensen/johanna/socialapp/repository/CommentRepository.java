@@ -3,9 +3,16 @@ package se.jensen.johanna.socialapp.repository;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import se.jensen.johanna.socialapp.model.Comment;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
 @Repository
 public interface CommentRepository extends JpaRepository<Comment, Long> {
 
@@ -26,4 +33,126 @@ public interface CommentRepository extends JpaRepository<Comment, Long> {
      * @return {@link Comment}
      */
     Page<Comment> findByPost_postIdAndParentIsNull(Long postId, Pageable pageable);
+
+    /**
+     * Retrieves all main comments for a post with their authors in one query
+     *
+     * @param postId   id of post to fetch comments for
+     * @param pageable Returns paginated list
+     * @return {@link Comment} with the user association initialized
+     */
+    @Query(value = "SELECT c FROM Comment c JOIN FETCH c.user WHERE c.post.postId = :postId AND c.parent IS NULL",
+            countQuery = "SELECT count(c) FROM Comment c WHERE c.post.postId = :postId AND c.parent IS NULL")
+    Page<Comment> findMainCommentsWithUser(@Param("postId") Long postId, Pageable pageable);
+
+    /**
+     * Retrieves the oldest replies of each given comment, at most perParent per comment,
+     * so a comment with many replies costs no more rows than one with a few.
+     * Rows are ordered oldest first so the tree can be assembled in order.
+     *
+     * @param parentIds ids of the comments whose direct replies are fetched
+     * @param perParent maximum number of replies to return per comment
+     * @return flat list of {@link CommentTreeRow}
+     */
+    @Query(value = "SELECT r.comment_id AS \"commentId\", r.parent_id AS \"parentId\", u.user_id AS \"userId\", " +
+            "u.username AS \"username\", r.text AS \"text\", r.created_at AS \"createdAt\", r.updated_at AS \"updatedAt\" " +
+            "FROM (SELECT c.comment_id, c.parent_id, c.user_id, c.text, c.created_at, c.updated_at, " +
+            "ROW_NUMBER() OVER (PARTITION BY c.parent_id ORDER BY c.created_at, c.comment_id) AS rn " +
+            "FROM comments c WHERE c.parent_id IN (:parentIds)) r " +
+            "JOIN users u ON u.user_id = r.user_id WHERE r.rn <= :perParent " +
+            "ORDER BY r.created_at, r.comment_id", nativeQuery = true)
+    List<CommentTreeRow> findFirstReplies(@Param("parentIds") Collection<Long> parentIds, @Param("perParent") int perParent);
+
+    /**
+     * Counts all descendants of a comment, as one range scan over the path prefix
+     *
+     * @param subtreePath path prefix of the comment, see {@link Comment#getSubtreePath()}
+     * @return number of replies in the thread below the comment
+     */
+    @Query("SELECT COUNT(c) FROM Comment c WHERE c.path LIKE CONCAT(:subtreePath, '%')")
+    long countSubtree(@Param("subtreePath") String subtreePath);
+
+    /**
+     * Deletes a comment and all of its descendants in a single statement
+     *
+     * @param commentId   id of the comment to delete
+     * @param subtreePath path prefix of the comment, see {@link Comment#getSubtreePath()}
+     * @return number of deleted comments
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("DELETE FROM Comment c WHERE c.commentId = :commentId OR c.path LIKE CONCAT(:subtreePath, '%')")
+    int deleteSubtree(@Param("commentId") Long commentId, @Param("subtreePath") String subtreePath);
+
+    /**
+     * Retrieves the newest main comments for a post, first page in cursor mode
+     *
+     * @param postId id of post to fetch comments for
+     * @param limit  number of rows to fetch
+     * @return List of {@link Comment} ordered by createdAt and commentId descending
+     */
+    @Query("SELECT c FROM Comment c JOIN FETCH c.user WHERE c.post.postId = :postId AND c.parent IS NULL " +
+            "ORDER BY c.createdAt DESC, c.commentId DESC")
+    List<Comment> findMainComments(@Param("postId") Long postId, Pageable limit);
+
+    /**
+     * Retrieves the main comments for a post that are older than the cursor position
+     *
+     * @param postId    id of post to fetch comments for
+     * @param createdAt createdAt of the last comment on the previous page
+     * @param commentId id of the last comment on the previous page
+     * @param limit     number of rows to fetch
+     * @return List of {@link Comment} ordered by createdAt and commentId descending
+     */
+    @Query("SELECT c FROM Comment c JOIN FETCH c.user WHERE c.post.postId = :postId AND c.parent IS NULL " +
+            "AND (c.createdAt, c.commentId) < (:createdAt, :commentId) ORDER BY c.createdAt DESC, c.commentId DESC")
+    List<Comment> findMainCommentsBefore(@Param("postId") Long postId,
+                                         @Param("createdAt") LocalDateTime createdAt,
+                                         @Param("commentId") Long commentId,
+                                         Pageable limit);
+
+    /**
+     * Retrieves the oldest replies for a comment, first page in cursor mode
+     *
+     * @param parentId ID of the parent-comment
+     * @param limit    number of rows to fetch
+     * @return List of {@link Comment} ordered by createdAt and commentId ascending
+     */
+    @Query("SELECT c FROM Comment c JOIN FETCH c.user WHERE c.parent.commentId = :parentId " +
+            "ORDER BY c.createdAt ASC, c.commentId ASC")
+    List<Comment> findReplies(@Param("parentId") Long parentId, Pageable limit);
+
+    /**
+     * Retrieves the replies for a comment that are newer than the cursor position
+     *
+     * @param parentId  ID of the parent-comment
+     * @param createdAt createdAt of the last reply on the previous page
+     * @param commentId id of the last reply on the previous page
+     * @param limit     number of rows to fetch
+     * @return List of {@link Comment} ordered by createdAt and commentId ascending
+     */
+    @Query("SELECT c FROM Comment c JOIN FETCH c.user WHERE c.parent.commentId = :parentId " +
+            "AND (c.createdAt, c.commentId) > (:createdAt, :commentId) ORDER BY c.createdAt ASC, c.commentId ASC")
+    List<Comment> findRepliesAfter(@Param("parentId") Long parentId,
+                                   @Param("createdAt") LocalDateTime createdAt,
+                                   @Param("commentId") Long commentId,
+                                   Pageable limit);
+
+    /**
+     * Flat row of a comment tree, joined with the author's username
+     */
+    interface CommentTreeRow {
+        Long getCommentId();
+
+        Long getParentId();
+
+        Long getUserId();
+
+        String getUsername();
+
+        String getText();
+
+        LocalDateTime getCreatedAt();
+
+        LocalDateTime getUpdatedAt();
+    }
 }
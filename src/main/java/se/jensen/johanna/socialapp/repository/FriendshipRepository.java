@@ -1,23 +1,49 @@
 package se.jensen.johanna.socialapp.repository;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import se.jensen.johanna.socialapp.index.FriendGraph;
 import se.jensen.johanna.socialapp.model.Friendship;
 import se.jensen.johanna.socialapp.model.FriendshipStatus;
 
-import java.util.List;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface FriendshipRepository extends JpaRepository<Friendship, Long> {
 
-    boolean existsBySender_UserIdAndReceiver_UserId(Long senderId, Long receiverId);
+    // Inserts a pending request unless any relation already exists between the two users, in one statement.
+    // Returns the new friendship id, or empty when the pair already has a row.
+    @Transactional
+    @Query(value = "INSERT INTO friendships (sender_id, receiver_id, low_user_id, high_user_id, status) " +
+            "VALUES (:senderId, :receiverId, LEAST(:senderId, :receiverId), GREATEST(:senderId, :receiverId), 'PENDING') " +
+            "ON CONFLICT (low_user_id, high_user_id) DO NOTHING RETURNING friendship_id", nativeQuery = true)
+    Optional<Long> insertRequest(@Param("senderId") Long senderId, @Param("receiverId") Long receiverId);
 
+    // Loads only the ids and status of a friendship, enough for the authorization and state checks
+    @Query("SELECT new se.jensen.johanna.socialapp.index.FriendGraph$Edge(f.friendshipId, f.senderId, f.receiverId, f.status) " +
+            "FROM Friendship f WHERE f.friendshipId = :friendshipId")
+    Optional<FriendGraph.Edge> findEdgeById(@Param("friendshipId") Long friendshipId);
 
-    // Finds friendships for a user filtered by a specific status (e.g., only ACCEPTED)
-    @Query("SELECT f FROM Friendship f WHERE (f.sender.userId = :userId OR f.receiver.userId = :userId) AND f.status = :status")
-    List<Friendship> findFriendshipsByUserIdAndStatus(@Param("userId") Long userId, @Param("status") FriendshipStatus status);
+    // Accepts a request only if it is still pending, returns 0 if it was accepted or removed concurrently
+    @Modifying
+    @Query("UPDATE Friendship f SET f.status = se.jensen.johanna.socialapp.model.FriendshipStatus.ACCEPTED, f.acceptedAt = :acceptedAt " +
+            "WHERE f.friendshipId = :friendshipId AND f.status = se.jensen.johanna.socialapp.model.FriendshipStatus.PENDING")
+    int acceptPending(@Param("friendshipId") Long friendshipId, @Param("acceptedAt") LocalDateTime acceptedAt);
 
-    // Finds a specific friendship between two users (bi-directional check)
-    @Query("SELECT f FROM Friendship f WHERE (f.sender.userId = :user1Id AND f.receiver.userId = :user2Id) OR (f.sender.userId = :user2Id AND f.receiver.userId = :user1Id)")
-    List<Friendship> findFriendshipBetween(@Param("user1Id") Long user1Id, @Param("user2Id") Long user2Id);
-}
\ No newline at end of file
+    @Modifying
+    @Query("DELETE FROM Friendship f WHERE f.friendshipId = :friendshipId AND f.status = :status")
+    int deleteByIdAndStatus(@Param("friendshipId") Long friendshipId, @Param("status") FriendshipStatus status);
+
+    // Streams every pending and accepted relation as a graph edge, used to load the FriendGraph at startup
+    @Query("SELECT new se.jensen.johanna.socialapp.index.FriendGraph$Edge(f.friendshipId, f.senderId, f.receiverId, f.status) " +
+            "FROM Friendship f WHERE f.status IN (se.jensen.johanna.socialapp.model.FriendshipStatus.PENDING, se.jensen.johanna.socialapp.model.FriendshipStatus.ACCEPTED)")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    Stream<FriendGraph.Edge> streamActiveEdges();
+}
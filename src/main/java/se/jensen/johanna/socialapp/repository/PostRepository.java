@@ -3,12 +3,80 @@ package se.jensen.johanna.socialapp.repository;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import se.jensen.johanna.socialapp.dto.PostDTO;
 import se.jensen.johanna.socialapp.model.Post;
 
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
 @Repository
 public interface PostRepository extends JpaRepository<Post, Long> {
 
 
     Page<Post> findByUser_UserId(Long userId, Pageable pageable);
-}
\ No newline at end of file
+
+    /**
+     * Retrieves a page of posts as {@link PostDTO} with author details in a single query,
+     * so the lazy {@link Post#getUser()} association is never initialized per row.
+     *
+     * @param pageable the pagination and sorting information
+     * @return {@link Page} of {@link PostDTO}
+     */
+    @Query(value = "SELECT new se.jensen.johanna.socialapp.dto.PostDTO(" +
+            "p.postId, u.userId, u.username, u.profileImagePath, p.text, p.createdAt, p.updatedAt) " +
+            "FROM Post p JOIN p.user u",
+            countQuery = "SELECT count(p) FROM Post p")
+    Page<PostDTO> findAllPostDTOs(Pageable pageable);
+
+    /**
+     * Retrieves a single post as {@link PostDTO} with author details in a single query.
+     *
+     * @param postId ID of the post
+     * @return {@link Optional} of {@link PostDTO}, empty if the post does not exist
+     */
+    @Query("SELECT new se.jensen.johanna.socialapp.dto.PostDTO(" +
+            "p.postId, u.userId, u.username, u.profileImagePath, p.text, p.createdAt, p.updatedAt) " +
+            "FROM Post p JOIN p.user u WHERE p.postId = :postId")
+    Optional<PostDTO> findPostDTOById(@Param("postId") Long postId);
+
+    /**
+     * Retrieves the newest posts with their authors, first page in cursor mode.
+     *
+     * @param limit number of rows to fetch
+     * @return List of {@link PostDTO} ordered by createdAt and postId descending
+     */
+    @Query("SELECT new se.jensen.johanna.socialapp.dto.PostDTO(" +
+            "p.postId, u.userId, u.username, u.profileImagePath, p.text, p.createdAt, p.updatedAt) " +
+            "FROM Post p JOIN p.user u ORDER BY p.createdAt DESC, p.postId DESC")
+    List<PostDTO> findLatest(Pageable limit);
+
+    /**
+     * Retrieves the posts older than the given cursor position with their authors.
+     *
+     * @param createdAt createdAt of the last post on the previous page
+     * @param postId    id of the last post on the previous page
+     * @param limit     number of rows to fetch
+     * @return List of {@link PostDTO} ordered by createdAt and postId descending
+     */
+    @Query("SELECT new se.jensen.johanna.socialapp.dto.PostDTO(" +
+            "p.postId, u.userId, u.username, u.profileImagePath, p.text, p.createdAt, p.updatedAt) " +
+            "FROM Post p JOIN p.user u WHERE (p.createdAt, p.postId) < (:createdAt, :postId) " +
+            "ORDER BY p.createdAt DESC, p.postId DESC")
+    List<PostDTO> findLatestBefore(@Param("createdAt") LocalDateTime createdAt,
+                                   @Param("postId") Long postId,
+                                   Pageable limit);
+
+    @Query("SELECT p FROM Post p WHERE p.user.userId = :userId ORDER BY p.createdAt DESC, p.postId DESC")
+    List<Post> findLatestByUser(@Param("userId") Long userId, Pageable limit);
+
+    @Query("SELECT p FROM Post p WHERE p.user.userId = :userId AND (p.createdAt, p.postId) < (:createdAt, :postId) " +
+            "ORDER BY p.createdAt DESC, p.postId DESC")
+    List<Post> findLatestByUserBefore(@Param("userId") Long userId,
+                                      @Param("createdAt") LocalDateTime createdAt,
+                                      @Param("postId") Long postId,
+                                      Pageable limit);
+}
@@ -3,19 +3,60 @@ package se.jensen.johanna.socialapp.repository;
 import jakarta.transaction.Transactional;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import se.jensen.johanna.socialapp.dto.RefreshTokenSession;
 import se.jensen.johanna.socialapp.model.RefreshToken;
-import se.jensen.johanna.socialapp.model.User;
 
+import java.time.Instant;
 import java.util.Optional;
 
 @Repository
 public interface RefreshTokenRepository extends JpaRepository<RefreshToken, Long> {
 
-    Optional<RefreshToken> findByToken(String token);
+    @Query("SELECT new se.jensen.johanna.socialapp.dto.RefreshTokenSession(u.userId, u.username, u.role, t.expiryDate) " +
+            "FROM RefreshToken t JOIN t.user u WHERE t.tokenHash = :tokenHash")
+    Optional<RefreshTokenSession> findSessionByTokenHash(@Param("tokenHash") String tokenHash);
 
+    // Finds the session a token was rotated into, if that happened after the given time
+    @Query("SELECT new se.jensen.johanna.socialapp.dto.RefreshTokenSession(u.userId, u.username, u.role, t.expiryDate) " +
+            "FROM RefreshToken t JOIN t.user u WHERE t.previousTokenHash = :tokenHash AND t.rotatedAt > :rotatedAfter")
+    Optional<RefreshTokenSession> findSessionByPreviousTokenHash(@Param("tokenHash") String tokenHash,
+                                                                 @Param("rotatedAfter") Instant rotatedAfter);
+
+    // Deletes the session of one device, whether the token is its current one or the one it just replaced
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM RefreshToken t WHERE t.tokenHash = :tokenHash OR t.previousTokenHash = :tokenHash")
+    int deleteByTokenHash(@Param("tokenHash") String tokenHash);
+
+    // Creates or replaces the refresh token of one device of a user in one statement, without loading the user.
+    // Concurrent logins on the same device both succeed and the last one wins.
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO refresh_tokens (user_id, device_id, token, expiry_date) " +
+            "VALUES (:userId, :deviceId, :tokenHash, :expiryDate) " +
+            "ON CONFLICT (user_id, device_id) DO UPDATE SET token = EXCLUDED.token, expiry_date = EXCLUDED.expiry_date, " +
+            "previous_token = NULL, rotated_at = NULL", nativeQuery = true)
+    void upsertForDevice(@Param("userId") Long userId, @Param("deviceId") String deviceId,
+                         @Param("tokenHash") String tokenHash, @Param("expiryDate") Instant expiryDate);
+
+    // Swaps a valid token for its successor in one statement and remembers the old hash for the grace window.
+    // Returns 0 if the token is unknown, already rotated or expired, so of two concurrent rotations exactly one wins.
+    @Transactional
+    @Modifying
+    @Query("UPDATE RefreshToken t SET t.tokenHash = :newTokenHash, t.expiryDate = :expiryDate, " +
+            "t.previousTokenHash = :oldTokenHash, t.rotatedAt = :now " +
+            "WHERE t.tokenHash = :oldTokenHash AND t.expiryDate > :now")
+    int rotate(@Param("oldTokenHash") String oldTokenHash, @Param("newTokenHash") String newTokenHash,
+               @Param("expiryDate") Instant expiryDate, @Param("now") Instant now);
+
+    // One chunk of the expired-token purge, kept small so each delete holds its locks briefly
     @Transactional
     @Modifying
-    void deleteByUser(User user);
+    @Query(value = "DELETE FROM refresh_tokens WHERE refresh_token_id IN " +
+            "(SELECT refresh_token_id FROM refresh_tokens WHERE expiry_date < :now LIMIT :limit)", nativeQuery = true)
+    int deleteExpiredBatch(@Param("now") Instant now, @Param("limit") int limit);
 
 }
@@ -0,0 +1,100 @@
+package se.jensen.johanna.socialapp.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import se.jensen.johanna.socialapp.dto.PostDTO;
+import se.jensen.johanna.socialapp.model.TimelineEntry;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface TimelineEntryRepository extends JpaRepository<TimelineEntry, Long> {
+
+    /**
+     * Retrieves a slice of a user's home feed, newest first.
+     * Post and author are projected in the same query.
+     *
+     * @param ownerId  ID of the user whose feed is read
+     * @param pageable page number and size, sorting is ignored
+     * @return {@link Slice} of {@link PostDTO} without a total count
+     */
+    @Query("SELECT new se.jensen.johanna.socialapp.dto.PostDTO(" +
+            "p.postId, u.userId, u.username, u.profileImagePath, p.text, p.createdAt, p.updatedAt) " +
+            "FROM TimelineEntry t JOIN t.post p JOIN p.user u " +
+            "WHERE t.owner.userId = :ownerId ORDER BY t.createdAt DESC, p.postId DESC")
+    Slice<PostDTO> findFeed(@Param("ownerId") Long ownerId, Pageable pageable);
+
+    /**
+     * Retrieves the part of a user's home feed that is older than the cursor position.
+     *
+     * @param ownerId   ID of the user whose feed is read
+     * @param createdAt createdAt of the last post on the previous page
+     * @param postId    id of the last post on the previous page
+     * @param limit     number of rows to fetch
+     * @return List of {@link PostDTO} ordered newest first
+     */
+    @Query("SELECT new se.jensen.johanna.socialapp.dto.PostDTO(" +
+            "p.postId, u.userId, u.username, u.profileImagePath, p.text, p.createdAt, p.updatedAt) " +
+            "FROM TimelineEntry t JOIN t.post p JOIN p.user u " +
+            "WHERE t.owner.userId = :ownerId AND (t.createdAt, p.postId) < (:createdAt, :postId) " +
+            "ORDER BY t.createdAt DESC, p.postId DESC")
+    List<PostDTO> findFeedBefore(@Param("ownerId") Long ownerId,
+                                       @Param("createdAt") LocalDateTime createdAt,
+                                       @Param("postId") Long postId,
+                                       Pageable limit);
+
+    /**
+     * Writes one timeline entry for the author and one per accepted friend for a newly created post,
+     * in a single statement that reads the recipients from friendships.
+     *
+     * @param postId    ID of the post to deliver
+     * @param authorId  ID of the user who wrote the post
+     * @param createdAt creation time of the post
+     * @return number of entries written
+     */
+    @Modifying
+    @Query(value = "INSERT INTO timeline_entries (owner_id, post_id, created_at) " +
+            "SELECT :authorId, :postId, :createdAt " +
+            "UNION ALL SELECT f.high_user_id, :postId, :createdAt FROM friendships f " +
+            "WHERE f.low_user_id = :authorId AND f.status = 'ACCEPTED' " +
+            "UNION ALL SELECT f.low_user_id, :postId, :createdAt FROM friendships f " +
+            "WHERE f.high_user_id = :authorId AND f.status = 'ACCEPTED' " +
+            "ON CONFLICT (owner_id, post_id) DO NOTHING", nativeQuery = true)
+    int fanOut(@Param("postId") Long postId,
+               @Param("authorId") Long authorId,
+               @Param("createdAt") LocalDateTime createdAt);
+
+    /**
+     * Copies the newest posts written by one user into another user's timeline.
+     * Used when a friendship is accepted so the new friend's recent history shows up in the feed.
+     *
+     * @param ownerId  ID of the user receiving the posts
+     * @param authorId ID of the user whose posts are copied
+     * @param limit    maximum number of posts to copy, newest first
+     * @return number of entries written
+     */
+    @Modifying
+    @Query(value = "INSERT INTO timeline_entries (owner_id, post_id, created_at) " +
+            "SELECT :ownerId, p.post_id, p.created_at FROM posts p WHERE p.user_id = :authorId " +
+            "ORDER BY p.created_at DESC, p.post_id DESC LIMIT :limit " +
+            "ON CONFLICT (owner_id, post_id) DO NOTHING", nativeQuery = true)
+    int backfill(@Param("ownerId") Long ownerId, @Param("authorId") Long authorId, @Param("limit") int limit);
+
+    /**
+     * Removes all posts written by one user from another user's timeline.
+     *
+     * @param ownerId  ID of the user whose timeline is cleaned
+     * @param authorId ID of the author whose posts are removed
+     * @return number of entries removed
+     */
+    @Modifying
+    @Query(value = "DELETE FROM timeline_entries t USING posts p " +
+            "WHERE t.post_id = p.post_id AND t.owner_id = :ownerId AND p.user_id = :authorId", nativeQuery = true)
+    int removeAuthor(@Param("ownerId") Long ownerId, @Param("authorId") Long authorId);
+}
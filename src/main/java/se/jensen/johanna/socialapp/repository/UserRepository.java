@@ -1,17 +1,33 @@
 package se.jensen.johanna.socialapp.repository;
 
-import org.springframework.data.domain.Page;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import se.jensen.johanna.socialapp.dto.UserDTO;
+import se.jensen.johanna.socialapp.dto.UserListDTO;
+import se.jensen.johanna.socialapp.dto.UserSummaryDTO;
 import se.jensen.johanna.socialapp.model.User;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
 
-    Page<User> findByUsernameContainingIgnoreCase(String username, Pageable pageable);
+    // Case-insensitive LIKE on lower(username) with an escaped pattern, served on PostgreSQL by the
+    // trigram index for substrings and the pattern index for prefixes (see SchemaMigrationRunner).
+    // A Slice, so a short prefix never counts all of its matches
+    @Query("SELECT new se.jensen.johanna.socialapp.dto.UserDTO(u.userId, u.profileImagePath, u.username, u.bio, CAST(NULL AS Integer)) " +
+            "FROM User u WHERE LOWER(u.username) LIKE :pattern ESCAPE '\\'")
+    Slice<UserDTO> searchByUsername(@Param("pattern") String pattern, Pageable pageable);
 
     Optional<User> findByUsername(String username);
 
@@ -21,5 +37,42 @@ public interface UserRepository extends JpaRepository<User, Long> {
 
     boolean existsByEmail(String email);
 
+    // Loads the misses of the UserSummaryCache
+    @Query("SELECT new se.jensen.johanna.socialapp.dto.UserSummaryDTO(u.userId, u.username, u.profileImagePath, u.bio, u.email) " +
+            "FROM User u WHERE u.userId IN :userIds")
+    List<UserSummaryDTO> findUserSummariesByIds(@Param("userIds") Collection<Long> userIds);
+
+    // Prefix match used by typeahead when the in-memory UsernameIndex is incomplete
+    @Query("SELECT new se.jensen.johanna.socialapp.dto.UserListDTO(u.userId, u.username, u.profileImagePath) " +
+            "FROM User u WHERE LOWER(u.username) LIKE :pattern ESCAPE '\\' ORDER BY LOWER(u.username), u.userId")
+    List<UserListDTO> findUserListDTOsByUsernameLike(@Param("pattern") String pattern, Pageable limit);
+
+    // Streams all users as list projections in id order, used for the NDJSON directory and to load the UsernameIndex
+    @Query("SELECT new se.jensen.johanna.socialapp.dto.UserListDTO(u.userId, u.username, u.profileImagePath) FROM User u ORDER BY u.userId")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    Stream<UserListDTO> streamUserListDTOs();
+
+    // Streams all usernames and emails, used to load the CredentialFilter at startup
+    @Query("SELECT u.username FROM User u")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    Stream<String> streamAllUsernames();
+
+    @Query("SELECT u.email FROM User u")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    Stream<String> streamAllEmails();
+
+    @Query("SELECT new se.jensen.johanna.socialapp.dto.UserListDTO(u.userId, u.username, u.profileImagePath) " +
+            "FROM User u ORDER BY u.userId ASC")
+    List<UserListDTO> findFirstUserListDTOs(Pageable limit);
+
+    @Query("SELECT new se.jensen.johanna.socialapp.dto.UserListDTO(u.userId, u.username, u.profileImagePath) " +
+            "FROM User u WHERE u.userId > :userId ORDER BY u.userId ASC")
+    List<UserListDTO> findUserListDTOsAfter(@Param("userId") Long userId, Pageable limit);
+
+    @Query("SELECT u FROM User u ORDER BY u.userId ASC")
+    List<User> findFirstUsers(Pageable limit);
+
+    @Query("SELECT u FROM User u WHERE u.userId > :userId ORDER BY u.userId ASC")
+    List<User> findUsersAfter(@Param("userId") Long userId, Pageable limit);
 
 }
@@ -0,0 +1,81 @@
+package se.jensen.johanna.socialapp.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+import se.jensen.johanna.socialapp.util.TokenHashUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * {@link JwtDecoder} that remembers tokens a delegate decoder has already verified.
+ * <p>
+ * A client sends the same access token with every request until it expires, and verifying its RS256
+ * signature is by far the most expensive part of authenticating a request. Verified tokens are cached
+ * by the SHA-256 of the token string, so a repeat token skips signature verification and claims parsing.
+ * An entry never outlives the token's own expiry, and tokens without one are not cached. Tokens that fail
+ * verification are never cached, so they keep failing in the delegate.
+ * <p>
+ * Hits, misses and evictions are published as the {@value #METRIC_NAME} cache metrics.
+ */
+public class CachingJwtDecoder implements JwtDecoder {
+    static final String METRIC_NAME = "auth.jwt.decoded";
+
+    private final JwtDecoder delegate;
+    private final Cache<String, Jwt> cache;
+
+    public CachingJwtDecoder(JwtDecoder delegate, long maxSize, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<String, Jwt>() {
+                    @Override
+                    public long expireAfterCreate(String tokenHash, Jwt jwt, long currentTime) {
+                        return remainingValidity(jwt).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String tokenHash, Jwt jwt, long currentTime, long currentDuration) {
+                        return expireAfterCreate(tokenHash, jwt, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String tokenHash, Jwt jwt, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, METRIC_NAME);
+    }
+
+    @Override
+    public Jwt decode(String token) throws JwtException {
+        String tokenHash = TokenHashUtils.sha256Hex(token);
+        Jwt cached = cache.getIfPresent(tokenHash);
+        if (cached != null) {
+            return cached;
+        }
+
+        Jwt jwt = delegate.decode(token);
+        if (!remainingValidity(jwt).isZero()) {
+            cache.put(tokenHash, jwt);
+        }
+        return jwt;
+    }
+
+    private static Duration remainingValidity(Jwt jwt) {
+        Instant expiresAt = jwt.getExpiresAt();
+        if (expiresAt == null) {
+            return Duration.ZERO;
+        }
+        Duration remaining = Duration.between(Instant.now(), expiresAt);
+        return remaining.isNegative() ? Duration.ZERO : remaining;
+    }
+}
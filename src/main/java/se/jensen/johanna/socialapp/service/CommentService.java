@@ -3,6 +3,7 @@ package se.jensen.johanna.socialapp.service;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -15,8 +16,17 @@ import se.jensen.johanna.socialapp.model.Comment;
 import se.jensen.johanna.socialapp.model.Post;
 import se.jensen.johanna.socialapp.model.User;
 import se.jensen.johanna.socialapp.repository.CommentRepository;
+import se.jensen.johanna.socialapp.repository.CommentRepository.CommentTreeRow;
 import se.jensen.johanna.socialapp.repository.PostRepository;
 import se.jensen.johanna.socialapp.repository.UserRepository;
+import se.jensen.johanna.socialapp.util.CursorUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Service class responsible for the business logic of comment management.
@@ -29,10 +39,20 @@ import se.jensen.johanna.socialapp.repository.UserRepository;
 @Transactional
 @RequiredArgsConstructor
 public class CommentService {
+    @Value("${app.comments.max-tree-depth:5}")
+    private int maxTreeDepth;
+
+    @Value("${app.comments.replies-per-level:10}")
+    private int repliesPerLevel = 10;
+
+    @Value("${app.comments.max-tree-replies:200}")
+    private int maxTreeReplies = 200;
+
     private final CommentRepository commentRepository;
     private final CommentMapper commentMapper;
     private final PostRepository postRepository;
     private final UserRepository userRepository;
+    private final CursorUtils cursorUtils;
 
 
     /**
@@ -101,6 +121,71 @@ public class CommentService {
 
     }
 
+    /**
+     * Retrieves a page of main comments for a post together with their replies down to a bounded depth.
+     * Replies are loaded one level at a time, at most app.comments.replies-per-level per comment and
+     * app.comments.max-tree-replies in total, so a viral thread costs no more than a quiet one.
+     * Comments with replies that are left out are marked with hasMoreReplies and can be paged per comment.
+     *
+     * @param postId ID of the post to fetch comments to
+     * @param depth  number of reply levels to include, capped by app.comments.max-tree-depth
+     * @return Returns {@link CommentDTO} with nested replies
+     */
+    public Page<CommentDTO> findCommentTree(Long postId, int depth, Pageable pageable) {
+        int maxDepth = Math.max(0, Math.min(depth, maxTreeDepth));
+        Page<Comment> mainComments = commentRepository.findMainCommentsWithUser(postId, pageable);
+        ReplyTree tree = mainComments.hasContent()
+                ? loadReplies(mainComments.map(Comment::getCommentId).getContent(), maxDepth)
+                : new ReplyTree(Map.of(), Set.of());
+
+        return mainComments.map(comment -> new CommentDTO(
+                comment.getCommentId(),
+                comment.getUser().getUserId(),
+                comment.getUser().getUsername(),
+                comment.getText(),
+                comment.getCreatedAt(),
+                comment.getUpdatedAt(),
+                buildReplies(comment.getCommentId(), tree),
+                tree.hasMoreReplies().contains(comment.getCommentId())));
+    }
+
+    /**
+     * Retrieves a comment with its replies down to a bounded depth,
+     * with the same per-comment and total reply limits as {@link #findCommentTree}.
+     *
+     * @param commentId ID of the comment to fetch the thread for
+     * @param depth     number of reply levels to include, capped by app.comments.max-tree-depth
+     * @return Returns {@link CommentDTO} with nested replies
+     * @throws NotFoundException If no comment exists with the given id
+     */
+    public CommentDTO findThread(Long commentId, int depth) {
+        Comment comment = getCommentOrThrow(commentId);
+        int maxDepth = Math.max(0, Math.min(depth, maxTreeDepth));
+        ReplyTree tree = loadReplies(List.of(commentId), maxDepth);
+
+        return new CommentDTO(
+                comment.getCommentId(),
+                comment.getUser().getUserId(),
+                comment.getUser().getUsername(),
+                comment.getText(),
+                comment.getCreatedAt(),
+                comment.getUpdatedAt(),
+                buildReplies(comment.getCommentId(), tree),
+                tree.hasMoreReplies().contains(comment.getCommentId()));
+    }
+
+    /**
+     * Counts all replies in the thread below a comment, at any depth, with one range query over the materialized path.
+     *
+     * @param commentId ID of the comment to count replies for
+     * @return number of replies below the comment
+     * @throws NotFoundException If no comment exists with the given id
+     */
+    public long countThreadReplies(Long commentId) {
+        Comment comment = getCommentOrThrow(commentId);
+        return commentRepository.countSubtree(comment.getSubtreePath());
+    }
+
     /**
      * Retrieves a list of all replies to a specific comment
      *
@@ -112,6 +197,42 @@ public class CommentService {
                 .map(commentMapper::toCommentDTO);
     }
 
+    /**
+     * Retrieves the main comments for a post in cursor mode, newest first.
+     *
+     * @param postId ID of the post to fetch comments to
+     * @param cursor opaque cursor from the previous page, null for the first page
+     * @param size   page size
+     * @return Returns a {@link CursorPage} of {@link CommentDTO}
+     */
+    public CursorPage<CommentDTO> scrollMainComments(Long postId, String cursor, int size) {
+        CursorUtils.Cursor after = cursorUtils.decode(cursor);
+        List<Comment> comments = after == null
+                ? commentRepository.findMainComments(postId, cursorUtils.limit(size))
+                : commentRepository.findMainCommentsBefore(postId, after.createdAt(), after.id(), cursorUtils.limit(size));
+
+        return cursorUtils.toPage(comments.stream().map(commentMapper::toCommentDTO).toList(), size,
+                comment -> cursorUtils.encode(comment.createdAt(), comment.commentId()));
+    }
+
+    /**
+     * Retrieves the replies to a specific comment in cursor mode, oldest first.
+     *
+     * @param commentId ID of comment to fetch replies to
+     * @param cursor    opaque cursor from the previous page, null for the first page
+     * @param size      page size
+     * @return Returns a {@link CursorPage} of {@link CommentDTO}
+     */
+    public CursorPage<CommentDTO> scrollReplies(Long commentId, String cursor, int size) {
+        CursorUtils.Cursor after = cursorUtils.decode(cursor);
+        List<Comment> replies = after == null
+                ? commentRepository.findReplies(commentId, cursorUtils.limit(size))
+                : commentRepository.findRepliesAfter(commentId, after.createdAt(), after.id(), cursorUtils.limit(size));
+
+        return cursorUtils.toPage(replies.stream().map(commentMapper::toCommentDTO).toList(), size,
+                reply -> cursorUtils.encode(reply.createdAt(), reply.commentId()));
+    }
+
     /**
      * Updates the content of an existing comment after verifying ownership
      *
@@ -136,7 +257,7 @@ public class CommentService {
     }
 
     /**
-     * Deleted comment after verifying ownership
+     * Deleted comment and all of its replies after verifying ownership
      *
      * @param commentId ID of comment to delete
      * @param userId    ID of the owner to comment
@@ -148,8 +269,8 @@ public class CommentService {
 
         Comment comment = getCommentOrThrow(commentId);
         validateAuthor(userId, comment);
-        commentRepository.delete(comment);
-        log.info("User with id={} successfully deleted comment with id={}", userId, commentId);
+        int deleted = commentRepository.deleteSubtree(commentId, comment.getSubtreePath());
+        log.info("User with id={} successfully deleted comment with id={} and {} replies", userId, commentId, deleted - 1);
     }
 
     /* ************************ ADMIN METHODS ********************** */
@@ -171,13 +292,13 @@ public class CommentService {
     }
 
     /**
-     * Admin-method to delete a comment
+     * Admin-method to delete a comment and all of its replies
      *
      * @param commentId ID of comment to delete
      */
     public void deleteComment(Long commentId) {
         Comment comment = getCommentOrThrow(commentId);
-        commentRepository.delete(comment);
+        commentRepository.deleteSubtree(commentId, comment.getSubtreePath());
     }
 
     /**
@@ -213,6 +334,65 @@ public class CommentService {
 
     }
 
+    /**
+     * Help method that loads the replies below the given comments one level at a time.
+     * Each level is one query returning at most repliesPerLevel replies per comment, and loading stops
+     * once maxTreeReplies replies are loaded, so the number of queries and rows is bounded.
+     * One extra reply per comment is read to tell whether more exist, and the level below the deepest
+     * one is read the same way, so comments at the depth limit are also marked when they have replies.
+     *
+     * @param parentIds IDs of the comments to load replies for
+     * @param levels    number of reply levels to load
+     * @return loaded rows grouped by parent id and the comments with replies left out
+     */
+    private ReplyTree loadReplies(List<Long> parentIds, int levels) {
+        Map<Long, List<CommentTreeRow>> repliesByParent = new HashMap<>();
+        Set<Long> hasMoreReplies = new HashSet<>();
+        int remaining = maxTreeReplies;
+        List<Long> parents = parentIds;
+        for (int level = 1; level <= levels + 1 && !parents.isEmpty(); level++) {
+            int perParent = level <= levels ? Math.min(repliesPerLevel, remaining) : 0;
+            Map<Long, Integer> readPerParent = new HashMap<>();
+            List<Long> next = new ArrayList<>();
+            for (CommentTreeRow row : commentRepository.findFirstReplies(parents, perParent + 1)) {
+                if (readPerParent.merge(row.getParentId(), 1, Integer::sum) > perParent || remaining == 0) {
+                    hasMoreReplies.add(row.getParentId());
+                    continue;
+                }
+                repliesByParent.computeIfAbsent(row.getParentId(), id -> new ArrayList<>()).add(row);
+                next.add(row.getCommentId());
+                remaining--;
+            }
+            parents = next;
+        }
+        return new ReplyTree(repliesByParent, hasMoreReplies);
+    }
+
+    /**
+     * Help method that builds the nested replies of a comment from the loaded rows.
+     * Recursion depth is bounded by the number of levels the rows were loaded with.
+     *
+     * @param parentId ID of the comment to build replies for
+     * @param tree     loaded rows grouped by their parent id, oldest first
+     * @return List of {@link CommentDTO} replies
+     */
+    private List<CommentDTO> buildReplies(Long parentId, ReplyTree tree) {
+        List<CommentTreeRow> rows = tree.repliesByParent().getOrDefault(parentId, List.of());
+        List<CommentDTO> replies = new ArrayList<>(rows.size());
+        for (CommentTreeRow row : rows) {
+            replies.add(new CommentDTO(
+                    row.getCommentId(),
+                    row.getUserId(),
+                    row.getUsername(),
+                    row.getText(),
+                    row.getCreatedAt(),
+                    row.getUpdatedAt(),
+                    buildReplies(row.getCommentId(), tree),
+                    tree.hasMoreReplies().contains(row.getCommentId())));
+        }
+        return replies;
+    }
+
     /**
      * Help method that retrieves a user and throws an exception if not found
      *
@@ -241,4 +421,7 @@ public class CommentService {
                 });
     }
 
+    // Replies loaded for a tree, grouped by parent id, and the comments that have more replies than loaded
+    private record ReplyTree(Map<Long, List<CommentTreeRow>> repliesByParent, Set<Long> hasMoreReplies) {
+    }
 }
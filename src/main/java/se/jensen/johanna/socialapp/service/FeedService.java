@@ -0,0 +1,106 @@
+package se.jensen.johanna.socialapp.service;
+
+import jakarta.transaction.Transactional;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Service;
+import se.jensen.johanna.socialapp.dto.CursorPage;
+import se.jensen.johanna.socialapp.dto.PostDTO;
+import se.jensen.johanna.socialapp.model.Post;
+import se.jensen.johanna.socialapp.repository.TimelineEntryRepository;
+import se.jensen.johanna.socialapp.util.CursorUtils;
+
+import java.util.List;
+
+/**
+ * Service class responsible for the friend-scoped home feed.
+ * <p>
+ * Every user has a timeline of {@link se.jensen.johanna.socialapp.model.TimelineEntry} rows.
+ * New posts are pushed to the author's and all accepted friends' timelines when they are written,
+ * and timelines are backfilled or cleaned when a friendship is accepted or removed.
+ * A backfill copies at most app.feed.backfill-limit of the newest posts per author, so accepting
+ * a friend with a long history stays a small insert on the request thread.
+ * Reading a feed is then a single ordered range scan over one user's timeline.
+ */
+@Slf4j
+@Service
+@Transactional
+@RequiredArgsConstructor
+public class FeedService {
+    private final TimelineEntryRepository timelineEntryRepository;
+    private final CursorUtils cursorUtils;
+
+    @Value("${app.feed.backfill-limit:200}")
+    private int backfillLimit = 200;
+
+    /**
+     * Retrieves the home feed for a user, newest posts first.
+     *
+     * @param userId   ID of the user whose feed is read
+     * @param pageable page number and size, any sort is ignored since the feed is always newest first
+     * @return {@link Slice} of {@link PostDTO} without a total count
+     */
+    public Slice<PostDTO> getFeed(Long userId, Pageable pageable) {
+        Pageable page = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize());
+        return timelineEntryRepository.findFeed(userId, page);
+    }
+
+    /**
+     * Retrieves the home feed for a user in cursor mode, newest posts first.
+     *
+     * @param userId ID of the user whose feed is read
+     * @param cursor opaque cursor from the previous page, null for the first page
+     * @param size   page size
+     * @return {@link CursorPage} of {@link PostDTO}
+     */
+    public CursorPage<PostDTO> scrollFeed(Long userId, String cursor, int size) {
+        CursorUtils.Cursor after = cursorUtils.decode(cursor);
+        List<PostDTO> posts = after == null
+                ? timelineEntryRepository.findFeed(userId, cursorUtils.limit(size)).getContent()
+                : timelineEntryRepository.findFeedBefore(userId, after.createdAt(), after.id(), cursorUtils.limit(size));
+
+        return cursorUtils.toPage(posts, size,
+                post -> cursorUtils.encode(post.createdAt(), post.postId()));
+    }
+
+    /**
+     * Delivers a newly created post to the author's timeline and to all accepted friends.
+     * Recipients are read from the friendships table in the same statement, so delivery
+     * does not depend on the in-memory friend graph and works for any number of friends.
+     *
+     * @param post the saved post to deliver
+     */
+    public void fanOut(Post post) {
+        int written = timelineEntryRepository.fanOut(post.getPostId(), post.getUser().getUserId(), post.getCreatedAt());
+        log.debug("Post with id={} delivered to {} timelines", post.getPostId(), written);
+    }
+
+    /**
+     * Copies the newest posts of two new friends into each other's timelines,
+     * at most app.feed.backfill-limit per author. Older posts stay on the author's profile.
+     *
+     * @param userId   ID of one user in the friendship
+     * @param friendId ID of the other user in the friendship
+     */
+    public void link(Long userId, Long friendId) {
+        timelineEntryRepository.backfill(userId, friendId, backfillLimit);
+        timelineEntryRepository.backfill(friendId, userId, backfillLimit);
+        log.debug("Timelines linked for users with id={} and id={}", userId, friendId);
+    }
+
+    /**
+     * Removes the posts of two former friends from each other's timelines.
+     *
+     * @param userId   ID of one user in the friendship
+     * @param friendId ID of the other user in the friendship
+     */
+    public void unlink(Long userId, Long friendId) {
+        timelineEntryRepository.removeAuthor(userId, friendId);
+        timelineEntryRepository.removeAuthor(friendId, userId);
+        log.debug("Timelines unlinked for users with id={} and id={}", userId, friendId);
+    }
+}
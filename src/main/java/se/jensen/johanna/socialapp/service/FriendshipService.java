@@ -3,8 +3,12 @@ package se.jensen.johanna.socialapp.service;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import se.jensen.johanna.socialapp.dto.CursorPage;
+import se.jensen.johanna.socialapp.dto.FriendPathDTO;
 import se.jensen.johanna.socialapp.dto.FriendResponseDTO;
+import se.jensen.johanna.socialapp.dto.FriendSuggestionDTO;
 import se.jensen.johanna.socialapp.dto.FriendshipStatusDTO;
 import se.jensen.johanna.socialapp.dto.MyFriendRequest;
 import se.jensen.johanna.socialapp.dto.UserListDTO;
@@ -12,16 +16,20 @@ import se.jensen.johanna.socialapp.exception.ForbiddenException;
 import se.jensen.johanna.socialapp.exception.IllegalFriendshipStateException;
 import se.jensen.johanna.socialapp.exception.NotFoundException;
 import se.jensen.johanna.socialapp.exception.UnauthorizedAccessException;
-import se.jensen.johanna.socialapp.mapper.FriendshipMapper;
-import se.jensen.johanna.socialapp.mapper.UserMapper;
-import se.jensen.johanna.socialapp.model.Friendship;
+import se.jensen.johanna.socialapp.index.FriendGraph;
+import se.jensen.johanna.socialapp.index.UserSummaryCache;
 import se.jensen.johanna.socialapp.model.FriendshipStatus;
-import se.jensen.johanna.socialapp.model.User;
 import se.jensen.johanna.socialapp.repository.FriendshipRepository;
-import se.jensen.johanna.socialapp.repository.UserRepository;
+import se.jensen.johanna.socialapp.util.CursorUtils;
+import se.jensen.johanna.socialapp.util.SqlStateUtils;
 
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Service class for managing friendship relations between users in the application.
@@ -29,6 +37,9 @@ import java.util.List;
  * This class provides functionality to send friend requests, accept or reject them,
  * retrieve lists of friends, and handle the deletion of existing relationships.
  * All operations are transactional and include security checks to ensure data integrity.
+ * <p>
+ * Friend lists, requests and status checks are answered from the in-memory {@link FriendGraph},
+ * which every write method here keeps current. User details are read through the {@link UserSummaryCache}.
  */
 
 @Slf4j
@@ -36,23 +47,26 @@ import java.util.List;
 @RequiredArgsConstructor
 @Transactional
 public class FriendshipService {
+    public static final int MAX_PATH_DEPTH = 6;
 
     private final FriendshipRepository friendshipRepository;
-    private final UserRepository userRepository;
-    private final FriendshipMapper friendshipMapper;
-    private final UserMapper userMapper;
+    private final UserSummaryCache userSummaryCache;
+    private final FeedService feedService;
+    private final FriendGraph friendGraph;
+    private final CursorUtils cursorUtils;
 
 
     /**
      * Creates a new friendship request with PENDING status.
-     * Validates that both users exist and that no friendship or request already exists between them.
+     * The request is a single insert on the canonical user pair, so duplicates in either direction
+     * and concurrent requests are rejected by the unique constraint instead of by pre-checks.
      *
      * @param senderId   the ID of the user sending the request
      * @param receiverId the ID of the user intended to receive the request
      * @return a {@link FriendResponseDTO} representing the created request
-     * @throws IllegalArgumentException if the user attempts to add themselves as a friend
-     * @throws IllegalStateException    if a friendship or request already exists between the users
-     * @throws NotFoundException        if either the sender or receiver user is not found
+     * @throws IllegalFriendshipStateException if the user attempts to add themselves as a friend,
+     *                                         or a friendship or request already exists between the users
+     * @throws NotFoundException               if the receiver user is not found
      */
 
     public FriendResponseDTO sendFriendRequest(Long senderId, Long receiverId) {
@@ -63,30 +77,25 @@ public class FriendshipService {
             throw new IllegalFriendshipStateException("You cannot add yourself as a friend.");
         }
 
-        // Check if friendship already exists in either direction
-        if (friendshipRepository.existsBySender_UserIdAndReceiver_UserId(senderId, receiverId) ||
-                friendshipRepository.existsBySender_UserIdAndReceiver_UserId(receiverId, senderId)) {
-            log.warn("User with id={} attempted to send a duplicate friend request to user with id={}", senderId, receiverId);
-            throw new IllegalFriendshipStateException("Friendship or request already exists.");
-        }
-
-        User sender = userRepository.findById(senderId).orElseThrow(() -> {
-            log.warn("Sender with id={} not found when sending a friend request", senderId);
-            return new NotFoundException("Sender with id " + senderId + " not found.");
-        });
-        User receiver = userRepository.findById(receiverId).orElseThrow(() -> {
+        Long friendshipId;
+        try {
+            friendshipId = friendshipRepository.insertRequest(senderId, receiverId).orElseThrow(() -> {
+                log.warn("User with id={} attempted to send a duplicate friend request to user with id={}", senderId, receiverId);
+                return new IllegalFriendshipStateException("Friendship or request already exists.");
+            });
+        } catch (DataIntegrityViolationException e) {
+            // Duplicates end in ON CONFLICT, so a foreign key violation means a missing user;
+            // the sender is the authenticated user, so it is the receiver
+            if (!SqlStateUtils.hasSqlState(e, SqlStateUtils.FOREIGN_KEY_VIOLATION)) {
+                throw e;
+            }
             log.warn("Receiver with id={} not found when receiving friend request", receiverId);
-            return new NotFoundException("Receiver with id " + receiverId + " not found.");
-        });
-
-        Friendship friendship = new Friendship();
-        friendship.setSender(sender);
-        friendship.setReceiver(receiver);
-        // Status is PENDING by default
+            throw new NotFoundException("Receiver with id " + receiverId + " not found.");
+        }
 
-        friendshipRepository.save(friendship); // Saves the new friendship request
+        friendGraph.requestSent(friendshipId, senderId, receiverId);
         log.info("User with id={} successfully sent a friend request to user with id={}", senderId, receiverId);
-        return friendshipMapper.toFriendResponseDTO(friendship);
+        return new FriendResponseDTO(friendshipId, FriendshipStatus.PENDING, senderId, receiverId);
     }
 
     /**
@@ -106,14 +115,14 @@ public class FriendshipService {
             Long currentUserId) {
         log.info("User with id={} is attempting to accept a friend request with id={}", currentUserId, friendshipId);
 
-        Friendship friendship = friendshipRepository.findById(friendshipId)
+        FriendGraph.Edge friendship = friendshipRepository.findEdgeById(friendshipId)
                 .orElseThrow(() -> {
                     log.warn("Friend request with id={} not found when user with id={} attempted to accept it", friendshipId, currentUserId);
                     return new NotFoundException("Friendship with id " + friendshipId + " not found.");
                 });
 
         // Security check: Only the receiver can accept the request
-        if (!friendship.getReceiver().getUserId().equals(currentUserId)) {
+        if (!friendship.receiverId().equals(currentUserId)) {
             log.warn("User with id={} attempted to accept friend request with id={} but is not the receiver", currentUserId, friendshipId);
             throw new ForbiddenException("You are not authorized to accept this request.");
         }
@@ -121,23 +130,29 @@ public class FriendshipService {
 
 
         // Validation: Cannot accept a request that has been rejected
-        if (friendship.getStatus().equals(FriendshipStatus.REJECTED)) {
+        if (friendship.status().equals(FriendshipStatus.REJECTED)) {
             log.warn("User with id={} attempted to accept rejected friend request with id={}", currentUserId, friendshipId);
             throw new IllegalFriendshipStateException("This request has already been rejected");
         }
 
         // Validation: Cannot accept a request that is already accepted
-        if (friendship.getStatus().equals(FriendshipStatus.ACCEPTED)) {
+        if (friendship.status().equals(FriendshipStatus.ACCEPTED)) {
             log.warn("User with id={} attempted to accept already accepted friend request with id={}", currentUserId, friendshipId);
             throw new IllegalFriendshipStateException("This request has already been accepted.");
         }
 
-        friendship.accept(); // Sets status to ACCEPTED and acceptedAt to now
-        friendshipRepository.save(friendship); // Updates the current friendship
+        // The update only matches a pending row, so it fails if the request changed after it was read
+        if (friendshipRepository.acceptPending(friendshipId, LocalDateTime.now()) == 0) {
+            log.warn("Friend request with id={} changed before user with id={} could accept it", friendshipId, currentUserId);
+            throw requestChanged(friendshipId);
+        }
+
+        feedService.link(friendship.senderId(), currentUserId);
+        friendGraph.requestAccepted(friendshipId, friendship.senderId(), currentUserId);
 
         log.info("Friend request with id={} successfully accepted by user with id={}", friendshipId, currentUserId);
 
-        return friendshipMapper.toFriendResponseDTO(friendship);
+        return new FriendResponseDTO(friendshipId, FriendshipStatus.ACCEPTED, friendship.senderId(), currentUserId);
     }
 
     /**
@@ -154,56 +169,124 @@ public class FriendshipService {
     public void rejectFriendRequest(Long friendshipId, Long currentUserId) {
         log.info("User with id={} is attempting to reject a friend request with id={}", currentUserId, friendshipId);
 
-        Friendship friendship = friendshipRepository.findById(friendshipId)
+        FriendGraph.Edge friendship = friendshipRepository.findEdgeById(friendshipId)
                 .orElseThrow(() -> {
                     log.warn("Friend request with id={} not found when user with id={} attempted to reject it", friendshipId, currentUserId);
                     return new NotFoundException("Friendship with id " + friendshipId + " not found.");
                 });
 
         // Security check: Only the receiver can reject the request
-        if (!friendship.getReceiver().getUserId().equals(currentUserId)) {
+        if (!friendship.receiverId().equals(currentUserId)) {
             log.warn("User with id={} attempted to reject friend request with id={} but is not the receiver", currentUserId, friendshipId);
             throw new ForbiddenException("You are not authorized to reject this request.");
         }
 
         // Validation: Cannot reject a request that is already accepted
-        if (friendship.getStatus().equals(FriendshipStatus.ACCEPTED)) {
+        if (friendship.status().equals(FriendshipStatus.ACCEPTED)) {
             log.warn("User with id={} attempted to reject already accepted friend request with id={}", currentUserId, friendshipId);
             throw new IllegalFriendshipStateException("This request has already been accepted.");
         }
         // Validation: Cannot reject a request that is already rejected
-        if (friendship.getStatus().equals(FriendshipStatus.REJECTED)) {
+        if (friendship.status().equals(FriendshipStatus.REJECTED)) {
             log.warn("User with id={} attempted to reject already rejected friend request with id={}", currentUserId, friendshipId);
             throw new IllegalFriendshipStateException("This request has already been rejected.");
         }
 
-        friendship.setStatus(FriendshipStatus.REJECTED);
+        // Deletes the friendship relation in the database, only while it is still pending.
+        if (friendshipRepository.deleteByIdAndStatus(friendshipId, FriendshipStatus.PENDING) == 0) {
+            log.warn("Friend request with id={} changed before user with id={} could reject it", friendshipId, currentUserId);
+            throw requestChanged(friendshipId);
+        }
+        friendGraph.removed(friendshipId, friendship.senderId(), currentUserId);
         log.info("Friend request with id={} successfully rejected by user with id={}", friendshipId, currentUserId);
 
-        // Deletes the friendship relation in the database.
-        friendshipRepository.delete(friendship);
-
-
     }
 
 
     /**
-     * Retrieves a list of accepted friendships from userId.
-     * Filters through the friendships and extracts the "other" user
+     * Retrieves a list of accepted friends for userId.
+     * Friend ids come from the {@link FriendGraph}, user details are loaded in a single query.
      *
      * @param userId ID of the user to fetch friends for
      * @return {@link UserListDTO}
      */
     public List<UserListDTO> getFriendsForUser(Long userId) {
-        List<Friendship> friendships = friendshipRepository.findFriendshipsByUserIdAndStatus(userId, FriendshipStatus.ACCEPTED);
+        return toUserList(friendGraph.friendsOf(userId));
+    }
+
+    /**
+     * Retrieves the friends two users have in common, by intersecting their friend sets in the {@link FriendGraph}.
+     *
+     * @param userId      ID of the authenticated user
+     * @param otherUserId ID of the user whose profile is viewed
+     * @return {@link UserListDTO} for every mutual friend
+     */
+    public List<UserListDTO> getMutualFriends(Long userId, Long otherUserId) {
+        return toUserList(friendGraph.mutualFriends(userId, otherUserId));
+    }
 
-        List<UserListDTO> friends = new ArrayList<>();
-        for (Friendship f : friendships) {
-            User friend = f.getSender().getUserId().equals(userId) ?
-                    f.getReceiver() : f.getSender();
-            friends.add(userMapper.toUserListDTO(friend));
+    /**
+     * Finds the shortest chain of friendships between two users, up to {@value #MAX_PATH_DEPTH} friendships.
+     *
+     * @param userId      ID of the first user
+     * @param otherUserId ID of the last user
+     * @return {@link FriendPathDTO} with the number of friendships and the users along the path
+     * @throws NotFoundException if the users are not connected within {@value #MAX_PATH_DEPTH} friendships
+     */
+    public FriendPathDTO getFriendPath(Long userId, Long otherUserId) {
+        long[] path = friendGraph.shortestPath(userId, otherUserId, MAX_PATH_DEPTH);
+        if (path == null) {
+            log.debug("No friendship path within {} hops between user with id={} and user with id={}", MAX_PATH_DEPTH, userId, otherUserId);
+            throw new NotFoundException("No friendship path found between users " + userId + " and " + otherUserId + ".");
+        }
+        List<UserListDTO> users = toUserList(path);
+        if (users.size() != path.length) {
+            log.warn("User on friendship path between id={} and id={} not found", userId, otherUserId);
+            throw new NotFoundException("No friendship path found between users " + userId + " and " + otherUserId + ".");
+        }
+        return new FriendPathDTO(path.length - 1, users);
+    }
+
+    /**
+     * Checks whether two users are at most a number of friendships apart, e.g. for visibility rules.
+     *
+     * @param userId      ID of one user
+     * @param otherUserId ID of the other user
+     * @param hops        maximum number of friendships between the users
+     * @return true if the users are within hops of each other
+     */
+    public boolean isWithinHops(Long userId, Long otherUserId, int hops) {
+        return friendGraph.isWithinHops(userId, otherUserId, Math.min(hops, MAX_PATH_DEPTH));
+    }
+
+    /**
+     * Retrieves "people you may know" for a user in cursor mode: friends of friends ranked by the number
+     * of mutual friends. The {@link FriendGraph} keeps a bounded top list per user that is dropped when
+     * friendships around the user change, so a page is read from memory and only the user details
+     * are loaded from the database.
+     *
+     * @param userId ID of the authenticated user
+     * @param cursor opaque cursor from the previous page, null for the first page
+     * @param size   page size
+     * @return {@link CursorPage} of {@link FriendSuggestionDTO}
+     */
+    public CursorPage<FriendSuggestionDTO> getFriendSuggestions(Long userId, String cursor, int size) {
+        CursorUtils.Cursor after = cursorUtils.decode(cursor);
+        FriendGraph.Suggestion afterSuggestion = after == null ? null : new FriendGraph.Suggestion(after.id(), after.count());
+        List<FriendGraph.Suggestion> suggestions = friendGraph.suggestionsFor(
+                userId, afterSuggestion, cursorUtils.limit(size).getPageSize());
+        Map<Long, UserListDTO> users = userSummaryCache.getAll(suggestions.stream().map(FriendGraph.Suggestion::userId).toList());
+
+        List<FriendSuggestionDTO> result = new ArrayList<>(suggestions.size());
+        for (FriendGraph.Suggestion suggestion : suggestions) {
+            UserListDTO user = users.get(suggestion.userId());
+            if (user != null) {
+                result.add(new FriendSuggestionDTO(
+                        user.userId(), user.username(), user.profileImagePath(), suggestion.mutualFriends()));
+            }
         }
-        return friends;
+        return cursorUtils.toPage(result, size,
+                suggestion -> cursorUtils.encode(String.valueOf(suggestion.mutualFriendCount()), suggestion.userId()));
     }
 
     /**
@@ -215,43 +298,74 @@ public class FriendshipService {
      */
 
     public List<MyFriendRequest> getFriendRequestsForUser(Long userId) {
-        List<Friendship> pendingFriends = friendshipRepository.findFriendshipsByUserIdAndStatus(userId, FriendshipStatus.PENDING);
-        List<MyFriendRequest> friendRequests = new ArrayList<>();
-        for (Friendship f : pendingFriends) {
-            User otherUser = f.getSender().getUserId().equals(userId) ?
-                    f.getReceiver() : f.getSender();
+        return toFriendRequests(userId, friendGraph.pendingEdgesOf(userId));
+    }
 
-            boolean isIncoming = f.getReceiver().getUserId().equals(userId);
+    /**
+     * Retrieves accepted friends for userId in cursor mode, ordered by friend id.
+     * Only the friends on the requested page are loaded, as an id, username and image projection.
+     *
+     * @param userId ID of the user to fetch friends for
+     * @param cursor opaque cursor from the previous page, null for the first page
+     * @param size   page size
+     * @return {@link CursorPage} of {@link UserListDTO}
+     */
+    public CursorPage<UserListDTO> scrollFriendsForUser(Long userId, String cursor, int size) {
+        CursorUtils.Cursor after = cursorUtils.decode(cursor);
+        long[] friendIds = friendGraph.friendsOf(userId, after == null ? null : after.id(),
+                cursorUtils.limit(size).getPageSize());
 
-            friendRequests.add(new MyFriendRequest(
-                    f.getFriendshipId(),
-                    otherUser.getUserId(),
-                    otherUser.getUsername(),
-                    otherUser.getProfileImagePath(),
-                    isIncoming
-            ));
+        return cursorUtils.toPage(toUserList(friendIds), size, friend -> cursorUtils.encode(friend.userId()));
+    }
 
-        }
-        return friendRequests;
+    /**
+     * Retrieves pending friendships for the authenticated user in cursor mode, ordered by the id of the other user.
+     *
+     * @param userId the ID of the user to fetch friend requests for
+     * @param cursor opaque cursor from the previous page, null for the first page
+     * @param size   page size
+     * @return {@link CursorPage} of {@link MyFriendRequest}
+     */
+    public CursorPage<MyFriendRequest> scrollFriendRequestsForUser(Long userId, String cursor, int size) {
+        CursorUtils.Cursor after = cursorUtils.decode(cursor);
+        List<FriendGraph.Edge> pending = friendGraph.pendingEdgesOf(userId, after == null ? null : after.id(),
+                cursorUtils.limit(size).getPageSize());
 
+        return cursorUtils.toPage(toFriendRequests(userId, pending), size,
+                request -> cursorUtils.encode(request.friendId()));
     }
 
     /**
      * Retrieves the friendship status between the current user and a target user.
      * Used to determine UI state (Add Friend, Cancel Request, Accept/Reject, Unfriend).
+     * Answered from the {@link FriendGraph} without a database query.
      */
     public FriendshipStatusDTO getFriendshipStatus(Long currentUserId, Long targetUserId) {
-        List<Friendship> friendships = friendshipRepository.findFriendshipBetween(currentUserId, targetUserId);
+        return friendGraph.edgeBetween(currentUserId, targetUserId)
+                .map(edge -> new FriendshipStatusDTO(edge.friendshipId(), edge.status(), edge.isIncomingFor(currentUserId)))
+                .orElse(null); // No relationship exists
+    }
 
-        if (friendships.isEmpty()) {
-            return null; // No relationship exists
+    /**
+     * Retrieves the friendship status between the current user and many target users at once,
+     * e.g. for every user card in a search result. Answered from the {@link FriendGraph}.
+     *
+     * @param currentUserId ID of the authenticated user
+     * @param targetUserIds IDs of the users to check
+     * @return {@link FriendshipStatusDTO} per target user id, users without a relation are left out
+     */
+    public Map<Long, FriendshipStatusDTO> getFriendshipStatuses(Long currentUserId, Collection<Long> targetUserIds) {
+        Map<Long, FriendshipStatusDTO> statuses = new LinkedHashMap<>();
+        for (Long targetUserId : targetUserIds) {
+            if (targetUserId == null || statuses.containsKey(targetUserId)) {
+                continue;
+            }
+            FriendshipStatusDTO status = getFriendshipStatus(currentUserId, targetUserId);
+            if (status != null) {
+                statuses.put(targetUserId, status);
+            }
         }
-
-        // If multiple exist due to bad data, we just take the first one to avoid crashing
-        Friendship f = friendships.get(0);
-        boolean isIncoming = f.getStatus() == FriendshipStatus.PENDING && f.getReceiver().getUserId().equals(currentUserId);
-
-        return new FriendshipStatusDTO(f.getFriendshipId(), f.getStatus(), isIncoming);
+        return statuses;
     }
 
     /**
@@ -267,16 +381,74 @@ public class FriendshipService {
     public void deleteFriendship(Long friendshipId, Long userId) {
         log.info("User with id={} is attempting to delete a friendship with id={}", userId, friendshipId);
 
-        Friendship friendship = friendshipRepository.findById(friendshipId).orElseThrow(() -> {
+        FriendGraph.Edge friendship = friendshipRepository.findEdgeById(friendshipId).orElseThrow(() -> {
             log.warn("Friendship with id={} not found when user with id={} attempted to delete it", friendshipId, userId);
             return new NotFoundException("Friendship with id " + friendshipId + " not found.");
         });
-        if (!userId.equals(friendship.getSender().getUserId()) && !userId.equals(friendship.getReceiver().getUserId())) {
+        if (!userId.equals(friendship.senderId()) && !userId.equals(friendship.receiverId())) {
             log.warn("User with id={} attempted to delete friendship with id={} but is not authorized", userId, friendshipId);
             throw new UnauthorizedAccessException("You are not authorized to delete this friendship");
         }
 
-        friendshipRepository.delete(friendship);
+        // Deleting by the status that was read keeps feed cleanup consistent with a concurrent accept
+        if (friendshipRepository.deleteByIdAndStatus(friendshipId, friendship.status()) == 0) {
+            log.warn("Friendship with id={} changed while user with id={} attempted to delete it", friendshipId, userId);
+            throw new IllegalFriendshipStateException("Friendship was changed, please try again.");
+        }
+        if (friendship.status() == FriendshipStatus.ACCEPTED) {
+            feedService.unlink(friendship.senderId(), friendship.receiverId());
+        }
+        friendGraph.removed(friendshipId, friendship.senderId(), friendship.receiverId());
         log.info("User with id={} successfully deleted friendship with id={}", userId, friendshipId);
     }
+
+    private List<MyFriendRequest> toFriendRequests(Long userId, List<FriendGraph.Edge> pending) {
+        Map<Long, UserListDTO> users = userSummaryCache.getAll(pending.stream().map(edge -> edge.otherUser(userId)).toList());
+
+        List<MyFriendRequest> friendRequests = new ArrayList<>(pending.size());
+        for (FriendGraph.Edge edge : pending) {
+            UserListDTO otherUser = users.get(edge.otherUser(userId));
+            if (otherUser == null) {
+                continue;
+            }
+            friendRequests.add(new MyFriendRequest(
+                    edge.friendshipId(),
+                    otherUser.userId(),
+                    otherUser.username(),
+                    otherUser.profileImagePath(),
+                    edge.isIncomingFor(userId)
+            ));
+        }
+        return friendRequests;
+    }
+
+    private List<UserListDTO> toUserList(long[] userIds) {
+        Map<Long, UserListDTO> users = userSummaryCache.getAll(Arrays.stream(userIds).boxed().toList());
+
+        List<UserListDTO> result = new ArrayList<>(userIds.length);
+        for (long userId : userIds) {
+            UserListDTO user = users.get(userId);
+            if (user != null) {
+                result.add(user);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Re-reads a request that was pending when read but no longer matched the conditional update,
+     * so the error tells whether it was accepted, rejected or withdrawn in the meantime.
+     */
+    private IllegalFriendshipStateException requestChanged(Long friendshipId) {
+        FriendshipStatus status = friendshipRepository.findEdgeById(friendshipId)
+                .map(FriendGraph.Edge::status)
+                .orElse(null);
+        if (status == FriendshipStatus.ACCEPTED) {
+            return new IllegalFriendshipStateException("This request has already been accepted.");
+        }
+        if (status == FriendshipStatus.REJECTED) {
+            return new IllegalFriendshipStateException("This request has already been rejected.");
+        }
+        return new IllegalFriendshipStateException("This request was withdrawn or rejected and no longer exists.");
+    }
 }
@@ -1,33 +1,61 @@
 package se.jensen.johanna.socialapp.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import se.jensen.johanna.socialapp.index.AfterCommit;
 import se.jensen.johanna.socialapp.model.User;
 import se.jensen.johanna.socialapp.repository.UserRepository;
 import se.jensen.johanna.socialapp.security.MyUserDetails;
 
+import java.time.Duration;
+
 /**
  * Custom implementation of the Spring Security {@link UserDetailsService} interface.
  * <p>
  * This service is responsible for retrieving user authentication and authorization data
  * from the database during the login process. It bridges the application's domain
  * {@link User} entity and Spring Security's requirement for a {@link UserDetails} object.
+ * <p>
+ * Loaded users are kept in a small cache with a short TTL, so repeated logins do not query the database.
+ * {@link UserService} evicts a user whenever their role changes or the user is deleted.
  */
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class MyUserDetailsService implements UserDetailsService {
     private final UserRepository userRepository;
 
+    @Value("${app.auth.user-details-cache.max-size:10000}")
+    private long maxSize = 10_000;
+
+    @Value("${app.auth.user-details-cache.ttl:30s}")
+    private Duration ttl = Duration.ofSeconds(30);
+
+    private Cache<String, MyUserDetails> cache;
+
+    @PostConstruct
+    void init() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
     /**
      * Locates the user based on the provided username.
      * <p>
      * This method is invoked by the Spring Security authentication provider. It searches
-     * for the user in the database via the {@link UserRepository}. If found, the user data
-     * is wrapped in a {@link MyUserDetails} instance.
+     * for the user in the cache, and on a miss in the database via the {@link UserRepository}.
+     * If found, the user data is wrapped in a {@link MyUserDetails} instance.
      *
      * @param username the username identifying the user whose data is required.
      * @return a fully populated {@link UserDetails} object for the specified user.
@@ -36,10 +64,27 @@ public class MyUserDetailsService implements UserDetailsService {
 
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        User user = userRepository.findByUsername(username).orElseThrow(() -> new UsernameNotFoundException("User not found " + username));
-        System.out.println("DEBUG: Försöker logga in användare: " + username);
-        System.out.println("DEBUG: Lösenord i Java-objektet: " + user.getPassword());
-        return new MyUserDetails(user);
+        MyUserDetails userDetails = cache.get(username, this::load);
+        if (userDetails == null) {
+            log.debug("Authentication attempt for unknown username={}", username);
+            throw new UsernameNotFoundException("User not found " + username);
+        }
+        return userDetails;
+    }
+
+    /**
+     * Removes a user from the cache once the current transaction commits,
+     * so the next login reads their current role from the database.
+     *
+     * @param username username of the changed user
+     */
+    public void evict(String username) {
+        AfterCommit.run(() -> cache.invalidate(username));
+    }
 
+    // Unknown usernames return null and are not cached
+    private MyUserDetails load(String username) {
+        log.debug("Loading user with username={} for authentication", username);
+        return userRepository.findByUsername(username).map(MyUserDetails::new).orElse(null);
     }
 }
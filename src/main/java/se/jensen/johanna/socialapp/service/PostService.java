@@ -14,6 +14,9 @@ import se.jensen.johanna.socialapp.model.Post;
 import se.jensen.johanna.socialapp.model.User;
 import se.jensen.johanna.socialapp.repository.PostRepository;
 import se.jensen.johanna.socialapp.repository.UserRepository;
+import se.jensen.johanna.socialapp.util.CursorUtils;
+
+import java.util.List;
 
 /**
  * Service class for managing posts in the social application.
@@ -29,6 +32,8 @@ public class PostService {
     private final PostRepository postRepository;
     private final PostMapper postMapper;
     private final UserRepository userRepository;
+    private final FeedService feedService;
+    private final CursorUtils cursorUtils;
 
 
     /**
@@ -38,10 +43,26 @@ public class PostService {
      * @return a {@link Page} of {@link PostDTO} containing post and author-details
      */
     public Page<PostDTO> getAllPosts(Pageable pageable) {
-        Page<Post> postPage = postRepository.findAll(pageable);
+        return postRepository.findAllPostDTOs(pageable);
 
-        return postPage.map(postMapper::toPostDTO);
+    }
 
+    /**
+     * Retrieves all posts in cursor mode, newest first.
+     * Uses keyset pagination on (createdAt, postId), so deep pages cost the same as the first one.
+     *
+     * @param cursor opaque cursor from the previous page, null for the first page
+     * @param size   page size
+     * @return a {@link CursorPage} of {@link PostDTO}
+     */
+    public CursorPage<PostDTO> scrollPosts(String cursor, int size) {
+        CursorUtils.Cursor after = cursorUtils.decode(cursor);
+        List<PostDTO> posts = after == null
+                ? postRepository.findLatest(cursorUtils.limit(size))
+                : postRepository.findLatestBefore(after.createdAt(), after.id(), cursorUtils.limit(size));
+
+        return cursorUtils.toPage(posts, size,
+                post -> cursorUtils.encode(post.createdAt(), post.postId()));
     }
 
     /**
@@ -59,6 +80,30 @@ public class PostService {
     }
 
 
+    /**
+     * Retrieves all posts belonging to a specific user in cursor mode, newest first.
+     *
+     * @param userId the ID of the user whose posts are to be retrieved
+     * @param cursor opaque cursor from the previous page, null for the first page
+     * @param size   page size
+     * @return a {@link CursorPage} of {@link UserPostDTO}
+     * @throws NotFoundException if the user with the specified ID does not exist
+     */
+    public CursorPage<UserPostDTO> scrollPostsForUser(Long userId, String cursor, int size) {
+        if (!userRepository.existsById(userId)) {
+            log.warn("User with id={} not found", userId);
+            throw new NotFoundException("User with id " + userId + " not found.");
+        }
+        CursorUtils.Cursor after = cursorUtils.decode(cursor);
+        List<Post> posts = after == null
+                ? postRepository.findLatestByUser(userId, cursorUtils.limit(size))
+                : postRepository.findLatestByUserBefore(userId, after.createdAt(), after.id(), cursorUtils.limit(size));
+
+        return cursorUtils.toPage(posts.stream().map(postMapper::toUserPostDTO).toList(), size,
+                post -> cursorUtils.encode(post.createdAt(), post.postId()));
+    }
+
+
     /**
      * Finds a single post by its unique identifier.
      *
@@ -67,12 +112,16 @@ public class PostService {
      * @throws NotFoundException if the post with the specified ID is not found
      */
     public PostDTO getPost(Long postId) {
-        Post post = getPostOrThrow(postId);
-        return postMapper.toPostDTO(post);
+        return postRepository.findPostDTOById(postId)
+                .orElseThrow(() -> {
+                    log.warn("Post with id={} not found", postId);
+                    return new NotFoundException("Post with id " + postId + " not found.");
+                });
     }
 
     /**
      * Creates and saves a new post for a specific user.
+     * The post is delivered to the home feeds of the author and their friends.
      *
      * @param postRequest the data containing the post content
      * @param userId      the ID of the user creating the post
@@ -86,6 +135,7 @@ public class PostService {
         Post post = postMapper.toPost(postRequest);
         post.setUser(user);
         postRepository.save(post);
+        feedService.fanOut(post);
         log.info("Post created for user with id={}", userId);
         return postMapper.toPostResponseDTO(post);
 
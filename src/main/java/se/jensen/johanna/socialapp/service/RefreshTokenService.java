@@ -1,26 +1,41 @@
 package se.jensen.johanna.socialapp.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import se.jensen.johanna.socialapp.exception.NotFoundException;
+import se.jensen.johanna.socialapp.dto.RefreshTokenSession;
 import se.jensen.johanna.socialapp.exception.RefreshTokenException;
-import se.jensen.johanna.socialapp.model.RefreshToken;
-import se.jensen.johanna.socialapp.model.User;
+import se.jensen.johanna.socialapp.index.AfterCommit;
+import se.jensen.johanna.socialapp.model.Role;
 import se.jensen.johanna.socialapp.repository.RefreshTokenRepository;
-import se.jensen.johanna.socialapp.repository.UserRepository;
+import se.jensen.johanna.socialapp.util.TokenHashUtils;
 
+import java.time.Duration;
 import java.time.Instant;
-import java.util.Optional;
 import java.util.UUID;
 
 /**
  * Service class for managing the lifecycle of Refresh Tokens.
  * Responsible for persisting tokens in the database, verifying their expiration,
  * and facilitating the issuance of new JWT Access Tokens.
+ * <p>
+ * Every device of a user has its own session, identified by a device id cookie, so a login on one device
+ * does not sign out the others. Only a SHA-256 hash of each token is stored and looked up. Creating and
+ * rotating a token are single statements that never load the user. A token that was rotated moments ago,
+ * e.g. by a concurrent refresh from another tab, is still accepted for app.refresh-tokens.reuse-grace.
+ * The user behind a token is kept in a short-lived cache so a refresh usually needs no read either; a cached identity is reloaded from the database at least every
+ * app.refresh-tokens.cache.ttl, however often the token is rotated. Expired tokens are purged in the background.
  */
 
+@Slf4j
 @Transactional
 @Service
 @RequiredArgsConstructor
@@ -29,70 +44,175 @@ public class RefreshTokenService {
     @Value("${app.jwt.refresh-expiration-ms}")
     private Long refreshTokenDurationMs;
 
+    @Value("${app.refresh-tokens.cache.max-size:100000}")
+    private long cacheMaxSize = 100_000;
+
+    @Value("${app.refresh-tokens.cache.ttl:20m}")
+    private Duration cacheTtl = Duration.ofMinutes(20);
+
+    @Value("${app.refresh-tokens.reuse-grace:30s}")
+    private Duration reuseGrace = Duration.ofSeconds(30);
+
+    @Value("${app.refresh-tokens.purge-batch-size:1000}")
+    private int purgeBatchSize = 1000;
+
     private final RefreshTokenRepository refreshTokenRepository;
-    private final UserRepository userRepository;
+    private final MeterRegistry meterRegistry;
+
+    private Cache<String, CachedSession> sessions;
+
+    @PostConstruct
+    void init() {
+        sessions = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfter(new Expiry<String, CachedSession>() {
+                    @Override
+                    public long expireAfterCreate(String tokenHash, CachedSession cached, long currentTime) {
+                        Duration remaining = Duration.between(Instant.now(), cached.verifiedAt().plus(cacheTtl));
+                        return Math.max(0, remaining.toNanos());
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String tokenHash, CachedSession cached, long currentTime, long currentDuration) {
+                        return expireAfterCreate(tokenHash, cached, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String tokenHash, CachedSession cached, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
 
     /**
-     * Finds a {@link RefreshToken} by its token string.
-     *
-     * @param refreshToken the token string to search for
-     * @return an {@link Optional} containing the found RefreshToken, or empty if not found
+     * A rotated refresh token: the new token for the client and the user it belongs to.
+     * The token is null when the presented token was rotated moments ago by a concurrent refresh;
+     * the client then already received the newest token and should keep it.
      */
+    public record Rotation(String token, RefreshTokenSession session) {
+    }
 
-    public Optional<RefreshToken> findByToken(String refreshToken) {
-        return refreshTokenRepository.findByToken(refreshToken);
+    // verifiedAt is when the identity was last read from the database or authenticated,
+    // and is carried over on rotation so the cache cannot keep a stale role alive
+    private record CachedSession(RefreshTokenSession session, Instant verifiedAt) {
     }
 
     /**
-     * Creates a new {@link RefreshToken} for a specific user.
-     * If a refresh token already exists for the user, it is deleted before creating a new one.
+     * Creates a new refresh token for a just authenticated user on one device,
+     * replacing any token the user already has on that device.
      *
-     * @param userId the ID of the user for whom the token is created
-     * @return the newly created and saved {@link RefreshToken}
-     * @throws NotFoundException if the user with the given ID is not found
+     * @param userId   the ID of the user for whom the token is created
+     * @param username the username of the user
+     * @param role     the role of the user
+     * @param deviceId the ID of the device the user logged in on
+     * @return the new token, to be sent to the client; only its hash is saved
      */
 
-    public RefreshToken createRefreshToken(Long userId) {
-        User user = userRepository.findById(userId).orElseThrow(NotFoundException::new);
-        refreshTokenRepository.deleteByUser(user);
-        refreshTokenRepository.flush();
+    public String createRefreshToken(Long userId, String username, Role role, String deviceId) {
+        String token = UUID.randomUUID().toString();
+        String tokenHash = TokenHashUtils.sha256Hex(token);
+        Instant now = Instant.now();
+        Instant expiryDate = now.plusMillis(refreshTokenDurationMs);
 
-        RefreshToken refreshToken = new RefreshToken();
-        refreshToken.setUser(user);
-        refreshToken.setToken(UUID.randomUUID().toString());
-        refreshToken.setExpiryDate(Instant.now().plusMillis(refreshTokenDurationMs));
+        refreshTokenRepository.upsertForDevice(userId, deviceId, tokenHash, expiryDate);
+        sessions.put(tokenHash, new CachedSession(new RefreshTokenSession(userId, username, role, expiryDate), now));
+        return token;
+    }
+
+    /**
+     * Exchanges a refresh token for a new one. The old token can only be used once,
+     * apart from concurrent refreshes within the reuse grace window.
+     *
+     * @param token the refresh token presented by the client
+     * @return the new token and the user it belongs to, see {@link Rotation}
+     * @throws RefreshTokenException if the token is unknown, already used or expired
+     */
+    public Rotation rotate(String token) {
+        String oldTokenHash = TokenHashUtils.sha256Hex(token);
+        CachedSession cached = sessions.get(oldTokenHash, hash -> refreshTokenRepository.findSessionByTokenHash(hash)
+                .map(session -> new CachedSession(session, Instant.now()))
+                .orElse(null));
+        if (cached == null) {
+            return reuseRecentRotation(oldTokenHash);
+        }
+        sessions.invalidate(oldTokenHash);
 
-        return refreshTokenRepository.save(refreshToken);
+        Instant now = Instant.now();
+        // Expired tokens are left to the background purge
+        if (cached.session().expiryDate().isBefore(now)) {
+            throw new RefreshTokenException("Refresh token has expired. Please Log in again.");
+        }
 
+        String newToken = UUID.randomUUID().toString();
+        String newTokenHash = TokenHashUtils.sha256Hex(newToken);
+        Instant expiryDate = now.plusMillis(refreshTokenDurationMs);
+        if (refreshTokenRepository.rotate(oldTokenHash, newTokenHash, expiryDate, now) == 0) {
+            return reuseRecentRotation(oldTokenHash);
+        }
 
+        RefreshTokenSession old = cached.session();
+        RefreshTokenSession session = new RefreshTokenSession(old.userId(), old.username(), old.role(), expiryDate);
+        sessions.put(newTokenHash, new CachedSession(session, cached.verifiedAt()));
+        return new Rotation(newToken, session);
     }
 
     /**
-     * Verifies if a {@link RefreshToken} has expired.
-     * If the token is expired, it is removed from the database and an exception is thrown.
+     * Deletes the session of the device a refresh token belongs to, e.g. on logout.
+     * Sessions on the user's other devices are kept.
      *
-     * @param refreshToken the token to verify
-     * @return the token if it is still valid
-     * @throws RefreshTokenException if the token has expired
+     * @param token the refresh token presented by the client
      */
 
-    public RefreshToken verifyExpiration(RefreshToken refreshToken) {
-        if (refreshToken.getExpiryDate().isBefore(Instant.now())) {
-            refreshTokenRepository.delete(refreshToken);
-            throw new RefreshTokenException("Refresh token has expired. Please Log in again.");
-        }
-        return refreshToken;
+    public void deleteRefreshToken(String token) {
+        String tokenHash = TokenHashUtils.sha256Hex(token);
+        sessions.invalidate(tokenHash);
+        refreshTokenRepository.deleteByTokenHash(tokenHash);
     }
 
     /**
-     * Deletes a {@link RefreshToken} from the database based on its token string.
+     * Accepts a token that a concurrent refresh rotated within the grace window. No new refresh token is issued,
+     * since the client's cookie already holds the one the winning refresh returned.
      *
-     * @param refreshToken the token string to be deleted
+     * @throws RefreshTokenException if the token was not rotated recently
      */
+    private Rotation reuseRecentRotation(String oldTokenHash) {
+        return refreshTokenRepository.findSessionByPreviousTokenHash(oldTokenHash, Instant.now().minus(reuseGrace))
+                .map(session -> new Rotation(null, session))
+                .orElseThrow(() -> new RefreshTokenException("RefreshToken is not in database"));
+    }
 
-    public void deleteRefreshToken(String refreshToken) {
-        findByToken(refreshToken).ifPresent(refreshTokenRepository::delete);
+    /**
+     * Drops the cached sessions of a user once the current transaction commits,
+     * so the next refresh reads their current role.
+     *
+     * @param userId ID of the changed user
+     */
+    public void evictSessions(Long userId) {
+        AfterCommit.run(() -> sessions.asMap().values().removeIf(cached -> cached.session().userId().equals(userId)));
+    }
 
+    /**
+     * Deletes all expired refresh tokens in chunks of app.refresh-tokens.purge-batch-size rows.
+     * Runs without a surrounding transaction, so every chunk commits on its own.
+     * The number of purged rows is counted in the {@code auth.refresh.tokens.purged} metric.
+     */
+    @Scheduled(fixedDelayString = "${app.refresh-tokens.purge-interval:PT1H}",
+            initialDelayString = "${app.refresh-tokens.purge-initial-delay:PT5M}")
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
+    public void purgeExpiredTokens() {
+        Instant now = Instant.now();
+        long purged = 0;
+        int deleted;
+        do {
+            deleted = refreshTokenRepository.deleteExpiredBatch(now, purgeBatchSize);
+            purged += deleted;
+        } while (deleted == purgeBatchSize);
+
+        meterRegistry.counter("auth.refresh.tokens.purged").increment(purged);
+        if (purged > 0) {
+            log.info("Purged {} expired refresh tokens", purged);
+        }
     }
 
 }
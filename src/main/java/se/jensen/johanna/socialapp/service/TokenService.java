@@ -9,6 +9,7 @@ import org.springframework.security.oauth2.jwt.JwtClaimsSet;
 import org.springframework.security.oauth2.jwt.JwtEncoder;
 import org.springframework.security.oauth2.jwt.JwtEncoderParameters;
 import org.springframework.stereotype.Service;
+import se.jensen.johanna.socialapp.model.Role;
 import se.jensen.johanna.socialapp.model.User;
 import se.jensen.johanna.socialapp.security.MyUserDetails;
 
@@ -40,15 +41,28 @@ public class TokenService {
 
 
     public String generateToken(User user) {
+        return generateToken(user.getUserId(), user.getUsername(), user.getRole());
+    }
+
+    /**
+     * Generates a JWT from the user's identity alone, e.g. when refreshing from a cached session
+     * without loading the {@link User} entity.
+     *
+     * @param userId   ID of the user
+     * @param username username of the user
+     * @param role     role of the user
+     * @return a signed JWT string containing user identity and roles
+     */
+    public String generateToken(Long userId, String username, Role role) {
         Instant now = Instant.now();
         Instant expiresAt = now.plus(expirationMinutes, ChronoUnit.MINUTES);
-        List<String> scope = List.of("ROLE_" + user.getRole().name());
+        List<String> scope = List.of("ROLE_" + role.name());
         JwtClaimsSet claimsSet = JwtClaimsSet.builder()
                 .issuer("self")
                 .issuedAt(now)
                 .expiresAt(expiresAt)
-                .subject(user.getUserId().toString())
-                .claim("name", user.getUsername())
+                .subject(userId.toString())
+                .claim("name", username)
                 .claim("scope", scope)
                 .build();
 
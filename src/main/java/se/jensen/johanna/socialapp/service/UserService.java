@@ -1,10 +1,14 @@
 package se.jensen.johanna.socialapp.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import se.jensen.johanna.socialapp.dto.*;
@@ -13,12 +17,29 @@ import se.jensen.johanna.socialapp.dto.admin.RoleResponse;
 import se.jensen.johanna.socialapp.exception.NotFoundException;
 import se.jensen.johanna.socialapp.exception.NotUniqueException;
 import se.jensen.johanna.socialapp.exception.PasswordMisMatchException;
+import se.jensen.johanna.socialapp.exception.ServiceBusyException;
+import se.jensen.johanna.socialapp.index.CredentialFilter;
+import se.jensen.johanna.socialapp.index.FriendGraph;
+import se.jensen.johanna.socialapp.index.UserSummaryCache;
+import se.jensen.johanna.socialapp.index.UsernameIndex;
 import se.jensen.johanna.socialapp.mapper.UserMapper;
 import se.jensen.johanna.socialapp.model.Role;
 import se.jensen.johanna.socialapp.model.User;
 import se.jensen.johanna.socialapp.repository.UserRepository;
-
+import se.jensen.johanna.socialapp.security.BoundedPasswordEncoder;
+import se.jensen.johanna.socialapp.util.CursorUtils;
+import se.jensen.johanna.socialapp.util.SqlStateUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
 
 /**
  * Service class responsible for managing user-related operations.
@@ -31,24 +52,69 @@ import java.util.List;
 @RequiredArgsConstructor
 @Transactional
 public class UserService {
+    private static final int MIN_SUBSTRING_QUERY_LENGTH = 3;
+    private static final int MAX_TYPEAHEAD_RESULTS = 20;
+    private static final int STREAM_FLUSH_INTERVAL = 500;
 
     private final UserRepository userRepository;
     private final UserMapper userMapper;
     private final PasswordEncoder passwordEncoder;
+    private final CursorUtils cursorUtils;
+    private final FriendGraph friendGraph;
+    private final UsernameIndex usernameIndex;
+    private final CredentialFilter credentialFilter;
+    private final UserSummaryCache userSummaryCache;
+    private final MyUserDetailsService userDetailsService;
+    private final RefreshTokenService refreshTokenService;
+    private final ObjectMapper objectMapper;
 
 
-    public Page<UserDTO> searchUsers(String username, Pageable pageable) {
-        return userRepository.findByUsernameContainingIgnoreCase(username, pageable).map(userMapper::toUserDTO);
+    /**
+     * Searches users by username, case-insensitive.
+     * Queries of at least {@value #MIN_SUBSTRING_QUERY_LENGTH} characters match anywhere in the username
+     * and use the trigram index; shorter queries match the start of the username and use the prefix index,
+     * since a one or two character substring would match most users anyway.
+     *
+     * @param username text to search for
+     * @param pageable pagination and sorting information
+     * @return a {@link Slice} of {@link UserDTO} without a total count
+     */
+    public Slice<UserDTO> searchUsers(String username, Pageable pageable) {
+        String query = escapeLike(username.strip().toLowerCase(Locale.ROOT));
+        String pattern = query.length() >= MIN_SUBSTRING_QUERY_LENGTH ? "%" + query + "%" : query + "%";
+        return userRepository.searchByUsername(pattern, pageable);
 
     }
 
+    /**
+     * Returns the first users, in username order, whose username starts with the prefix.
+     * Served from the in-memory {@link UsernameIndex}, or from the database if the index is over its memory budget.
+     *
+     * @param prefix start of the username, case-insensitive
+     * @param limit  maximum number of users, at most {@value #MAX_TYPEAHEAD_RESULTS}
+     * @return list of {@link UserListDTO}
+     */
+    public List<UserListDTO> typeahead(String prefix, int limit) {
+        if (prefix == null || prefix.isBlank()) {
+            return List.of();
+        }
+        int size = Math.max(1, Math.min(limit, MAX_TYPEAHEAD_RESULTS));
+        if (usernameIndex.isComplete()) {
+            return usernameIndex.findByPrefix(prefix.strip(), size);
+        }
+        String pattern = escapeLike(prefix.strip().toLowerCase(Locale.ROOT)) + "%";
+        return userRepository.findUserListDTOsByUsernameLike(pattern, PageRequest.ofSize(size));
+    }
+
     /**
      * Registers a new user in the system.
      * Validates credentials, hashes the password, and assigns the default MEMBER role.
+     * The password is hashed on the same bounded pool as logins, see {@link BoundedPasswordEncoder}.
      *
      * @param registerUserRequest the request object containing registration details
      * @throws PasswordMisMatchException if the password and confirmation-password do not match
      * @throws NotUniqueException        if the email or username is already in use
+     * @throws ServiceBusyException      if too many passwords are being hashed already
      */
     public void registerUser(RegisterUserRequest registerUserRequest) {
         log.info("Trying to register new user with email={}", registerUserRequest.email());
@@ -56,7 +122,18 @@ public class UserService {
 
         String hashedPw = passwordEncoder.encode(registerUserRequest.password());
         User user = userMapper.toUser(registerUserRequest, hashedPw, Role.MEMBER);
-        userRepository.save(user);
+        try {
+            userRepository.save(user);
+        } catch (DataIntegrityViolationException e) {
+            // Another registration took the email or username between the check and the insert
+            if (!SqlStateUtils.hasSqlState(e, SqlStateUtils.UNIQUE_VIOLATION)) {
+                throw e;
+            }
+            log.warn("Registration for email={} lost a race for the email or username", registerUserRequest.email());
+            throw new NotUniqueException("Email or username is already registered. Please try again.");
+        }
+        usernameIndex.userSaved(userMapper.toUserListDTO(user));
+        credentialFilter.userRegistered(user.getUsername(), user.getEmail());
 
         log.info("New user registered with id={} and email={}", user.getUserId(), user.getEmail());
 
@@ -69,8 +146,7 @@ public class UserService {
      * @return {@link MyDTO} A detailed view of the authenticated user
      */
     public MyDTO getAuthenticatedUser(Long userId) {
-        User user = getUserOrThrow(userId);
-        return userMapper.toMyDTO(user);
+        return userMapper.toMyDTO(getUserSummaryOrThrow(userId));
     }
 
     /**
@@ -87,6 +163,8 @@ public class UserService {
         User user = getUserOrThrow(userId);
         userMapper.updateUser(userRequest, user);
         userRepository.save(user);
+        usernameIndex.userSaved(userMapper.toUserListDTO(user));
+        userSummaryCache.invalidate(userId);
 
         log.info("User with id={} updated", userId);
         return userMapper.toUpdateUserResponse(user);
@@ -95,27 +173,81 @@ public class UserService {
     }
 
     /**
-     * Retrieves a list of all users
+     * Retrieves the user directory in cursor mode, ordered by userId
      *
-     * @return a list of {@link UserListDTO} objects
+     * @param cursor opaque cursor from the previous page, null for the first page
+     * @param size   page size
+     * @return {@link CursorPage} of {@link UserListDTO}
      */
-    public List<UserListDTO> getAllUsers() {
-        return userRepository.findAll().stream()
-                .map(userMapper::toUserListDTO).toList();
+    public CursorPage<UserListDTO> scrollUsers(String cursor, int size) {
+        CursorUtils.Cursor after = cursorUtils.decode(cursor);
+        List<UserListDTO> users = after == null
+                ? userRepository.findFirstUserListDTOs(cursorUtils.limit(size))
+                : userRepository.findUserListDTOsAfter(after.id(), cursorUtils.limit(size));
 
+        return cursorUtils.toPage(users, size, user -> cursorUtils.encode(user.userId()));
     }
 
+    /**
+     * Writes the whole user directory as newline-delimited JSON, one {@link UserListDTO} per line.
+     * Rows are read from a database cursor in batches of the JDBC fetch size and are not kept
+     * in the persistence context, so memory use does not grow with the number of users.
+     *
+     * @param outputStream stream to write to, not closed by this method
+     * @throws IOException if writing to the stream fails
+     */
+    public void writeAllUsers(OutputStream outputStream) throws IOException {
+        int written = 0;
+        try (Stream<UserListDTO> users = userRepository.streamUserListDTOs()) {
+            Iterator<UserListDTO> iterator = users.iterator();
+            while (iterator.hasNext()) {
+                outputStream.write(objectMapper.writeValueAsBytes(iterator.next()));
+                outputStream.write('\n');
+                if (++written % STREAM_FLUSH_INTERVAL == 0) {
+                    outputStream.flush();
+                }
+            }
+        }
+        outputStream.flush();
+        log.debug("Streamed {} users", written);
+    }
+
+
+    /**
+     * Retrieves several users at once, e.g. the authors of a page of comments.
+     * Users are served from the {@link UserSummaryCache}, and those not cached are loaded with a single query.
+     *
+     * @param userIds IDs of the users to retrieve, duplicates are ignored
+     * @return list of {@link UserListDTO} in the order of the first occurrence of each id, unknown ids are left out
+     */
+    public List<UserListDTO> getUsersByIds(List<Long> userIds) {
+        Set<Long> uniqueIds = new LinkedHashSet<>(userIds);
+        Map<Long, UserListDTO> users = userSummaryCache.getAll(uniqueIds);
+
+        List<UserListDTO> result = new ArrayList<>(users.size());
+        for (Long userId : uniqueIds) {
+            UserListDTO user = users.get(userId);
+            if (user != null) {
+                result.add(user);
+            }
+        }
+        return result;
+    }
 
     /**
-     * Finds a specific user by their ID and returns standard user data.
+     * Finds a specific user by their ID and returns standard user data,
+     * including the number of friends the user has in common with the viewer.
+     * The user is read through the {@link UserSummaryCache}.
      *
-     * @param userId the ID of the user to find
+     * @param userId   the ID of the user to find
+     * @param viewerId the ID of the authenticated user viewing the profile
      * @return the user details as a {@link UserDTO}
      * @throws NotFoundException if the user does not exist
      */
-    public UserDTO getUser(Long userId) {
-        return userRepository.findById(userId)
-                .map(userMapper::toUserDTO).orElseThrow(NotFoundException::new);
+    public UserDTO getUser(Long userId, Long viewerId) {
+        Integer mutualFriendCount = userId.equals(viewerId) ? null : friendGraph.mutualFriendCount(userId, viewerId);
+        return userSummaryCache.get(userId)
+                .map(user -> userMapper.toUserDTO(user, mutualFriendCount)).orElseThrow(NotFoundException::new);
     }
 
 
@@ -129,6 +261,10 @@ public class UserService {
         log.info("Trying to delete user with id={}", userId);
         User userToDelete = getUserOrThrow(userId);
         userRepository.delete(userToDelete);
+        usernameIndex.userDeleted(userId);
+        userSummaryCache.invalidate(userId);
+        userDetailsService.evict(userToDelete.getUsername());
+        credentialFilter.userDeleted(userToDelete.getUsername(), userToDelete.getEmail());
         log.info("User with id={} removed", userId);
     }
 
@@ -145,6 +281,23 @@ public class UserService {
         return userRepository.findAll(pageable).map(userMapper::toAdminUserDTO);
     }
 
+    /**
+     * Retrieves all users for Admin in cursor mode, ordered by userId.
+     *
+     * @param cursor opaque cursor from the previous page, null for the first page
+     * @param size   page size
+     * @return {@link CursorPage} of {@link AdminUserDTO}
+     */
+    public CursorPage<AdminUserDTO> scrollUsersAdmin(String cursor, int size) {
+        CursorUtils.Cursor after = cursorUtils.decode(cursor);
+        List<User> users = after == null
+                ? userRepository.findFirstUsers(cursorUtils.limit(size))
+                : userRepository.findUsersAfter(after.id(), cursorUtils.limit(size));
+
+        return cursorUtils.toPage(users.stream().map(userMapper::toAdminUserDTO).toList(), size,
+                user -> cursorUtils.encode(user.userId()));
+    }
+
     /**
      * Updates and saves the Role for a user. Intended for Admin use.
      *
@@ -161,6 +314,9 @@ public class UserService {
         log.info("Admin role-update initiated for user with email={}", user.getEmail());
         user.setRole(request.role());
         userRepository.save(user);
+        userSummaryCache.invalidate(user.getUserId());
+        userDetailsService.evict(user.getUsername());
+        refreshTokenService.evictSessions(user.getUserId());
         return new RoleResponse(user.getEmail(), user.getRole());
     }
 
@@ -178,6 +334,8 @@ public class UserService {
         User user = getUserOrThrow(userId);
         userMapper.updateUser(userRequest, user);
         userRepository.save(user);
+        usernameIndex.userSaved(userMapper.toUserListDTO(user));
+        userSummaryCache.invalidate(userId);
 
         return userMapper.toUpdateUserResponse(user);
 
@@ -189,6 +347,8 @@ public class UserService {
     /**
      * Validates that the registration details are unique and consistent.
      * Checks if passwords match and if the email/username is already registered.
+     * Uniqueness is always checked in the database: the {@link CredentialFilter} is local to this instance
+     * and may not have seen a registration made elsewhere, so it only serves the availability check.
      *
      * @param registerUserRequest the request object to validate
      * @throws PasswordMisMatchException if passwords do not match
@@ -211,6 +371,52 @@ public class UserService {
     }
 
 
+    /**
+     * Checks whether a username and/or email can still be registered, e.g. while the user types in the signup form.
+     * Values the {@link CredentialFilter} has never seen are reported free without a database query.
+     *
+     * @param username username to check, may be null
+     * @param email    email to check, may be null
+     * @return {@link AvailabilityResponse} with a result for every value that was given
+     */
+    public AvailabilityResponse checkAvailability(String username, String email) {
+        Boolean usernameAvailable = username == null ? null
+                : !isUsernameTaken(username);
+        Boolean emailAvailable = email == null ? null
+                : !isEmailTaken(email);
+        return new AvailabilityResponse(usernameAvailable, emailAvailable);
+    }
+
+    // Availability check only: the database is asked when the Bloom filter reports a possible match
+    private boolean isUsernameTaken(String username) {
+        return credentialFilter.mightHaveUsername(username) && userRepository.existsByUsername(username);
+    }
+
+    private boolean isEmailTaken(String email) {
+        return credentialFilter.mightHaveEmail(email) && userRepository.existsByEmail(email);
+    }
+
+    /**
+     * Escapes the LIKE wildcards in user input, so "_" and "%" are matched literally
+     */
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    /**
+     * Retrieves a user's cached summary and throws an exception if not found
+     *
+     * @param userId ID of user to fetch
+     * @return {@link UserSummaryDTO} of the user
+     */
+    private UserSummaryDTO getUserSummaryOrThrow(Long userId) {
+        return userSummaryCache.get(userId)
+                .orElseThrow(() -> {
+                    log.warn("User with id={} not found", userId);
+                    return new NotFoundException("User with id " + userId + " not found");
+                });
+    }
+
     /**
      * Retrieves a user and throws an exception if not found
      *
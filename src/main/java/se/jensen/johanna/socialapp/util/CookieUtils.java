@@ -4,6 +4,8 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseCookie;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+
 @Component
 public class CookieUtils {
     @Value("${app.jwt.refresh-expiration-ms}")
@@ -15,6 +17,9 @@ public class CookieUtils {
     @Value("${app.cookie.secure}")
     private Boolean cookieSecure;
 
+    // Browsers cap cookie lifetimes at 400 days
+    private static final Duration DEVICE_COOKIE_MAX_AGE = Duration.ofDays(400);
+
 
     public ResponseCookie createRefreshCookie(String refreshToken) {
         return ResponseCookie.from("refreshToken", refreshToken)
@@ -26,6 +31,20 @@ public class CookieUtils {
                 .build();
     }
 
+    /**
+     * Cookie that identifies the browser across logins, so every device gets its own refresh session.
+     * It outlives the refresh token and is kept on logout.
+     */
+    public ResponseCookie createDeviceCookie(String deviceId) {
+        return ResponseCookie.from("deviceId", deviceId)
+                .httpOnly(true)
+                .secure(cookieSecure)
+                .path("/")
+                .maxAge(DEVICE_COOKIE_MAX_AGE)
+                .sameSite(sameSite)
+                .build();
+    }
+
     public ResponseCookie getCleanResponseCookie() {
         return ResponseCookie.from("refreshToken", "")
                 .path("/")
@@ -0,0 +1,119 @@
+package se.jensen.johanna.socialapp.util;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import se.jensen.johanna.socialapp.dto.CursorPage;
+import se.jensen.johanna.socialapp.exception.InvalidRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Encodes and decodes the opaque cursors used for keyset pagination.
+ * A cursor is the sort key and id of the last item on a page, e.g. (createdAt, id),
+ * base64url-encoded so clients treat it as an opaque token.
+ */
+@Component
+public class CursorUtils {
+    public static final int MAX_PAGE_SIZE = 100;
+
+    private static final String SEPARATOR = "|";
+
+    public String encode(LocalDateTime createdAt, Long id) {
+        return encode(createdAt.toString(), id);
+    }
+
+    public String encode(Long id) {
+        return encode("", id);
+    }
+
+    public String encode(String key, Long id) {
+        String raw = key + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes a cursor received from a client.
+     *
+     * @param cursor the opaque cursor, may be null or blank for the first page
+     * @return the decoded {@link Cursor}, or null if no cursor was given
+     * @throws InvalidRequestException if the cursor is malformed
+     */
+    public Cursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf(SEPARATOR);
+            if (separator < 0) {
+                throw new InvalidRequestException("Invalid cursor.");
+            }
+            return new Cursor(raw.substring(0, separator), Long.parseLong(raw.substring(separator + 1)));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidRequestException("Invalid cursor.");
+        }
+    }
+
+    /**
+     * Creates a {@link Pageable} that fetches one row more than the requested size,
+     * so {@link #toPage} can tell whether there is a next page without a count query.
+     *
+     * @param size requested page size, clamped to 1..{@value #MAX_PAGE_SIZE}
+     * @return {@link Pageable} for the first size + 1 rows
+     */
+    public Pageable limit(int size) {
+        return PageRequest.ofSize(clamp(size) + 1);
+    }
+
+    /**
+     * Builds a {@link CursorPage} from rows fetched with {@link #limit}.
+     *
+     * @param rows     fetched rows, possibly one more than the page size
+     * @param size     requested page size
+     * @param cursorOf creates the cursor for a row
+     * @return {@link CursorPage} with the next cursor set if more rows exist
+     */
+    public <T> CursorPage<T> toPage(List<T> rows, int size, Function<T, String> cursorOf) {
+        int pageSize = clamp(size);
+        if (rows.size() <= pageSize) {
+            return new CursorPage<>(rows, null, false);
+        }
+        List<T> content = rows.subList(0, pageSize);
+        return new CursorPage<>(content, cursorOf.apply(content.get(pageSize - 1)), true);
+    }
+
+    private int clamp(int size) {
+        return Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+    }
+
+    /**
+     * A decoded cursor.
+     *
+     * @param key sort key of the last item, empty when the listing is ordered by id only
+     * @param id  id of the last item, used as tie-breaker
+     */
+    public record Cursor(String key, Long id) {
+
+        public int count() {
+            try {
+                return Integer.parseInt(key);
+            } catch (NumberFormatException e) {
+                throw new InvalidRequestException("Invalid cursor.");
+            }
+        }
+
+        public LocalDateTime createdAt() {
+            try {
+                return LocalDateTime.parse(key);
+            } catch (DateTimeParseException e) {
+                throw new InvalidRequestException("Invalid cursor.");
+            }
+        }
+    }
+}
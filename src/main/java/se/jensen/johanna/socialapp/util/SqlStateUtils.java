@@ -0,0 +1,27 @@
+package se.jensen.johanna.socialapp.util;
+
+import java.sql.SQLException;
+
+/**
+ * Tells which constraint kind a failed statement violated, from the PostgreSQL SQLSTATE of its cause.
+ * Hibernate only classifies some violations, so the state code is read from the {@link SQLException} directly.
+ */
+public final class SqlStateUtils {
+    public static final String UNIQUE_VIOLATION = "23505";
+    public static final String FOREIGN_KEY_VIOLATION = "23503";
+
+    private SqlStateUtils() {
+    }
+
+    /**
+     * @return true if the first {@link SQLException} in the cause chain has the given SQLSTATE
+     */
+    public static boolean hasSqlState(Throwable e, String sqlState) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException sqlException) {
+                return sqlState.equals(sqlException.getSQLState());
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,27 @@
+package se.jensen.johanna.socialapp.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Fixed-width hashing of bearer tokens, so tokens can be stored and looked up without keeping them in clear text.
+ */
+public final class TokenHashUtils {
+
+    private TokenHashUtils() {
+    }
+
+    /**
+     * @return the SHA-256 of the token as 64 lowercase hex characters
+     */
+    public static String sha256Hex(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package se.jensen.johanna.socialapp.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import se.jensen.johanna.socialapp.model.FriendshipStatus;
+import se.jensen.johanna.socialapp.repository.FriendshipRepository;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class FriendGraphTest {
+
+    private FriendshipRepository friendshipRepository;
+    private FriendGraph friendGraph;
+
+    @BeforeEach
+    void setUp() {
+        friendshipRepository = mock(FriendshipRepository.class);
+        friendGraph = new FriendGraph(friendshipRepository);
+    }
+
+    @Test
+    @DisplayName("Reload builds sorted friend sets and pending requests from the database")
+    void reload_BuildsIndex_FromActiveEdges() {
+        when(friendshipRepository.streamActiveEdges()).thenReturn(Stream.of(
+                new FriendGraph.Edge(1L, 1L, 3L, FriendshipStatus.ACCEPTED),
+                new FriendGraph.Edge(2L, 2L, 1L, FriendshipStatus.ACCEPTED),
+                new FriendGraph.Edge(3L, 4L, 1L, FriendshipStatus.PENDING)));
+
+        friendGraph.reload();
+
+        assertArrayEquals(new long[]{2L, 3L}, friendGraph.friendsOf(1L));
+        assertArrayEquals(new long[]{1L}, friendGraph.friendsOf(3L));
+        assertTrue(friendGraph.areFriends(2L, 1L));
+        assertEquals(1, friendGraph.pendingEdgesOf(1L).size());
+        assertTrue(friendGraph.pendingEdgesOf(1L).get(0).isIncomingFor(1L));
+        assertFalse(friendGraph.pendingEdgesOf(4L).get(0).isIncomingFor(4L));
+    }
+
+    @Test
+    @DisplayName("Accepting a request moves it from pending to friends for both users")
+    void requestAccepted_MovesEdgeFromPendingToFriends() {
+        friendGraph.requestSent(10L, 1L, 2L);
+        assertEquals(FriendshipStatus.PENDING, friendGraph.edgeBetween(2L, 1L).orElseThrow().status());
+
+        friendGraph.requestAccepted(10L, 1L, 2L);
+
+        assertEquals(FriendshipStatus.ACCEPTED, friendGraph.edgeBetween(1L, 2L).orElseThrow().status());
+        assertArrayEquals(new long[]{2L}, friendGraph.friendsOf(1L));
+        assertArrayEquals(new long[]{1L}, friendGraph.friendsOf(2L));
+        assertTrue(friendGraph.pendingEdgesOf(1L).isEmpty());
+        assertTrue(friendGraph.pendingEdgesOf(2L).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Removing a relation clears it for both users")
+    void removed_ClearsEdge() {
+        friendGraph.requestAccepted(10L, 1L, 2L);
+        friendGraph.requestAccepted(11L, 1L, 3L);
+
+        friendGraph.removed(10L, 2L, 1L);
+
+        assertTrue(friendGraph.edgeBetween(1L, 2L).isEmpty());
+        assertArrayEquals(new long[]{3L}, friendGraph.friendsOf(1L));
+        assertEquals(0, friendGraph.friendsOf(2L).length);
+    }
+
+    @Test
+    @DisplayName("Updates that arrive after a later change of the same friendship are ignored")
+    void staleUpdates_AreIgnored() {
+        // Accept and delete committed in that order, but the delete's callback ran first
+        friendGraph.removed(10L, 1L, 2L);
+        friendGraph.requestAccepted(10L, 1L, 2L);
+
+        assertTrue(friendGraph.edgeBetween(1L, 2L).isEmpty());
+        assertEquals(0, friendGraph.friendsOf(1L).length);
+
+        // The request's callback ran after the accept's
+        friendGraph.requestAccepted(11L, 1L, 3L);
+        friendGraph.requestSent(11L, 1L, 3L);
+
+        assertEquals(FriendshipStatus.ACCEPTED, friendGraph.edgeBetween(1L, 3L).orElseThrow().status());
+
+        // A late removal of an older row leaves the newer relation between the same users alone
+        friendGraph.requestSent(12L, 4L, 1L);
+        friendGraph.removed(9L, 1L, 4L);
+
+        assertEquals(12L, friendGraph.edgeBetween(1L, 4L).orElseThrow().friendshipId());
+    }
+
+    @Test
+    @DisplayName("Suggestions rank friends of friends by mutual friends and skip friends and pending requests")
+    void suggestionsFor_RanksByMutualFriends() {
+        // 1 is friends with 2, 3 and 4; 5 is friends with 2 and 3; 6 is friends with 4; 7 is friends with 2
+        when(friendshipRepository.streamActiveEdges()).thenReturn(Stream.of(
+                new FriendGraph.Edge(1L, 1L, 2L, FriendshipStatus.ACCEPTED),
+                new FriendGraph.Edge(2L, 1L, 3L, FriendshipStatus.ACCEPTED),
+                new FriendGraph.Edge(3L, 1L, 4L, FriendshipStatus.ACCEPTED),
+                new FriendGraph.Edge(4L, 5L, 2L, FriendshipStatus.ACCEPTED),
+                new FriendGraph.Edge(5L, 5L, 3L, FriendshipStatus.ACCEPTED),
+                new FriendGraph.Edge(6L, 6L, 4L, FriendshipStatus.ACCEPTED),
+                new FriendGraph.Edge(7L, 7L, 2L, FriendshipStatus.ACCEPTED)));
+        friendGraph.reload();
+
+        assertEquals(List.of(new FriendGraph.Suggestion(5L, 2), new FriendGraph.Suggestion(6L, 1), new FriendGraph.Suggestion(7L, 1)),
+                friendGraph.suggestionsFor(1L, null, 10));
+        assertEquals(List.of(new FriendGraph.Suggestion(7L, 1)),
+                friendGraph.suggestionsFor(1L, new FriendGraph.Suggestion(6L, 1), 10));
+
+        friendGraph.requestSent(8L, 1L, 6L);
+        friendGraph.requestAccepted(9L, 7L, 4L);
+
+        assertEquals(List.of(new FriendGraph.Suggestion(5L, 2), new FriendGraph.Suggestion(7L, 2)),
+                friendGraph.suggestionsFor(1L, null, 10));
+
+        friendGraph.removed(5L, 5L, 3L);
+
+        assertEquals(List.of(new FriendGraph.Suggestion(7L, 2), new FriendGraph.Suggestion(5L, 1)),
+                friendGraph.suggestionsFor(1L, null, 10));
+    }
+
+    @Test
+    @DisplayName("Suggestions skip hubs as intermediaries and keep only the top candidates per user")
+    void suggestionsFor_SkipsHubsAndIsBounded() {
+        ReflectionTestUtils.setField(friendGraph, "suggestionsPerUser", 2);
+        ReflectionTestUtils.setField(friendGraph, "suggestionsHubDegree", 4);
+        // 1 is friends with 2 and with hub 100; 2 is friends with 3, 4 and 5; 3 also with 6; hub 100 with 7, 8 and 9
+        when(friendshipRepository.streamActiveEdges()).thenReturn(Stream.of(
+                new FriendGraph.Edge(1L, 1L, 2L, FriendshipStatus.ACCEPTED),
+                new FriendGraph.Edge(2L, 1L, 100L, FriendshipStatus.ACCEPTED),
+                new FriendGraph.Edge(3L, 2L, 3L, FriendshipStatus.ACCEPTED),
+                new FriendGraph.Edge(4L, 2L, 4L, FriendshipStatus.ACCEPTED),
+                new FriendGraph.Edge(5L, 2L, 5L, FriendshipStatus.ACCEPTED),
+                new FriendGraph.Edge(6L, 100L, 3L, FriendshipStatus.ACCEPTED),
+                new FriendGraph.Edge(7L, 100L, 7L, FriendshipStatus.ACCEPTED),
+                new FriendGraph.Edge(8L, 100L, 8L, FriendshipStatus.ACCEPTED),
+                new FriendGraph.Edge(9L, 100L, 9L, FriendshipStatus.ACCEPTED)));
+        friendGraph.reload();
+
+        // 3 is found through 2 and counts the hub as a mutual friend too; 7, 8 and 9 are only reachable through the hub
+        assertEquals(List.of(new FriendGraph.Suggestion(3L, 2), new FriendGraph.Suggestion(4L, 1)),
+                friendGraph.suggestionsFor(1L, null, 10));
+
+        friendGraph.requestAccepted(10L, 4L, 1L);
+
+        assertEquals(List.of(new FriendGraph.Suggestion(3L, 2), new FriendGraph.Suggestion(5L, 1)),
+                friendGraph.suggestionsFor(1L, null, 10));
+    }
+
+    @Test
+    @DisplayName("Shortest path is found from both sides and respects the maximum depth")
+    void shortestPath_FindsShortestChain() {
+        // Chain 1-2-3-4-5-6 with a shortcut 2-5
+        when(friendshipRepository.streamActiveEdges()).thenReturn(Stream.of(
+                new FriendGraph.Edge(1L, 1L, 2L, FriendshipStatus.ACCEPTED),
+                new FriendGraph.Edge(2L, 2L, 3L, FriendshipStatus.ACCEPTED),
+                new FriendGraph.Edge(3L, 3L, 4L, FriendshipStatus.ACCEPTED),
+                new FriendGraph.Edge(4L, 4L, 5L, FriendshipStatus.ACCEPTED),
+                new FriendGraph.Edge(5L, 5L, 6L, FriendshipStatus.ACCEPTED),
+                new FriendGraph.Edge(6L, 2L, 5L, FriendshipStatus.ACCEPTED),
+                new FriendGraph.Edge(7L, 7L, 1L, FriendshipStatus.PENDING)));
+        friendGraph.reload();
+
+        assertArrayEquals(new long[]{1L, 2L, 5L, 6L}, friendGraph.shortestPath(1L, 6L, 6));
+        assertArrayEquals(new long[]{6L, 5L, 2L, 1L}, friendGraph.shortestPath(6L, 1L, 6));
+        assertNull(friendGraph.shortestPath(1L, 6L, 2));
+        assertNull(friendGraph.shortestPath(1L, 7L, 6));
+
+        assertTrue(friendGraph.isWithinHops(1L, 3L, 2));
+        assertFalse(friendGraph.isWithinHops(1L, 4L, 2));
+        assertTrue(friendGraph.isWithinHops(1L, 6L, 3));
+    }
+}
@@ -0,0 +1,54 @@
+package se.jensen.johanna.socialapp.index;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongArraysTest {
+
+    @Test
+    @DisplayName("Insert and remove keep the set sorted and duplicate-free")
+    void insertRemove_KeepSetSorted() {
+        long[] set = LongArrays.insert(LongArrays.insert(LongArrays.insert(LongArrays.EMPTY, 5L), 1L), 3L);
+
+        assertArrayEquals(new long[]{1L, 3L, 5L}, set);
+        assertSame(set, LongArrays.insert(set, 3L));
+        assertArrayEquals(new long[]{1L, 5L}, LongArrays.remove(set, 3L));
+        assertSame(set, LongArrays.remove(set, 4L));
+    }
+
+    @Test
+    @DisplayName("Intersection of similar sized sets uses merge")
+    void intersect_SimilarSizes() {
+        long[] a = {1L, 2L, 4L, 8L, 16L};
+        long[] b = {2L, 3L, 4L, 16L, 20L};
+
+        assertArrayEquals(new long[]{2L, 4L, 16L}, LongArrays.intersect(a, b));
+        assertEquals(3, LongArrays.intersectionSize(b, a));
+    }
+
+    @Test
+    @DisplayName("Intersection of a small set with a large set gives the same result")
+    void intersect_SkewedSizes() {
+        long[] large = LongStream.range(0, 10_000).map(i -> i * 2).toArray();
+        long[] small = {-1L, 4L, 5L, 9_998L, 19_998L, 30_000L};
+
+        assertArrayEquals(new long[]{4L, 9_998L, 19_998L}, LongArrays.intersect(small, large));
+        assertEquals(3, LongArrays.intersectionSize(large, small));
+        assertEquals(0, LongArrays.intersect(LongArrays.EMPTY, large).length);
+    }
+
+    @Test
+    @DisplayName("Page starts after the given value, also when the value is no longer in the set")
+    void page_StartsAfterValue() {
+        long[] set = {2L, 4L, 6L, 8L};
+
+        assertArrayEquals(new long[]{2L, 4L}, LongArrays.page(set, null, 2));
+        assertArrayEquals(new long[]{6L, 8L}, LongArrays.page(set, 4L, 2));
+        assertArrayEquals(new long[]{6L, 8L}, LongArrays.page(set, 5L, Integer.MAX_VALUE));
+        assertEquals(0, LongArrays.page(set, 8L, 2).length);
+    }
+}
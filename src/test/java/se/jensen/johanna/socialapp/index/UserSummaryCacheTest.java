@@ -0,0 +1,66 @@
+package se.jensen.johanna.socialapp.index;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import se.jensen.johanna.socialapp.dto.UserSummaryDTO;
+import se.jensen.johanna.socialapp.repository.UserRepository;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+class UserSummaryCacheTest {
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final UserSummaryCache userSummaryCache = new UserSummaryCache(userRepository, meterRegistry);
+
+    @BeforeEach
+    void setUp() {
+        userSummaryCache.init();
+        when(userRepository.findUserSummariesByIds(anyCollection())).thenAnswer(invocation -> {
+            List<Long> ids = List.copyOf(invocation.getArgument(0));
+            return ids.stream().filter(id -> id < 100).map(id -> new UserSummaryDTO(id, "user" + id, null, null, "user" + id + "@example.com")).toList();
+        });
+    }
+
+    @Test
+    @DisplayName("Only ids missing from the cache are loaded, in a single query")
+    void getAll_LoadsMissesTogether() {
+        assertEquals(Set.of(1L, 2L), userSummaryCache.getAll(List.of(1L, 2L, 404L)).keySet());
+        assertEquals(Set.of(1L, 2L, 3L), userSummaryCache.getAll(List.of(1L, 2L, 3L)).keySet());
+
+        verify(userRepository).findUserSummariesByIds(argThat(ids -> Set.copyOf(ids).equals(Set.of(1L, 2L, 404L))));
+        verify(userRepository).findUserSummariesByIds(argThat(ids -> Set.copyOf(ids).equals(Set.of(3L))));
+        verifyNoMoreInteractions(userRepository);
+    }
+
+    @Test
+    @DisplayName("An invalidated user is loaded again on the next lookup")
+    void invalidate_ForcesReload() {
+        userSummaryCache.getAll(List.of(1L));
+        userSummaryCache.invalidate(1L);
+        userSummaryCache.getAll(List.of(1L));
+
+        verify(userRepository, times(2)).findUserSummariesByIds(anyCollection());
+    }
+
+    @Test
+    @DisplayName("Single lookups are read through and counted as hits and misses")
+    void get_RecordsHitsAndMisses() {
+        assertEquals("user1", userSummaryCache.get(1L).orElseThrow().username());
+        assertEquals("user1", userSummaryCache.get(1L).orElseThrow().username());
+        assertTrue(userSummaryCache.get(404L).isEmpty());
+
+        verify(userRepository, times(2)).findUserSummariesByIds(anyCollection());
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", UserSummaryCache.METRIC_NAME).tag("result", "hit")
+                .functionCounter().count());
+        assertEquals(2.0, meterRegistry.get("cache.gets").tag("cache", UserSummaryCache.METRIC_NAME).tag("result", "miss")
+                .functionCounter().count());
+    }
+}
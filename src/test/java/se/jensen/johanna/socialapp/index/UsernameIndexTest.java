@@ -0,0 +1,96 @@
+package se.jensen.johanna.socialapp.index;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import se.jensen.johanna.socialapp.dto.UserListDTO;
+import se.jensen.johanna.socialapp.repository.UserRepository;
+
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class UsernameIndexTest {
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final UsernameIndex usernameIndex = new UsernameIndex(userRepository);
+
+    @Test
+    @DisplayName("Prefix lookup is case-insensitive, ordered by username and limited")
+    void findByPrefix_ReturnsFirstMatches() {
+        usernameIndex.userSaved(new UserListDTO(1L, "Johanna", null));
+        usernameIndex.userSaved(new UserListDTO(2L, "johan", "/images/2.png"));
+        usernameIndex.userSaved(new UserListDTO(3L, "Jonas", null));
+        usernameIndex.userSaved(new UserListDTO(4L, "Anna", null));
+
+        assertEquals(List.of(2L, 1L, 3L), usernameIndex.findByPrefix("JO", 10).stream().map(UserListDTO::userId).toList());
+        assertEquals(List.of(2L, 1L), usernameIndex.findByPrefix("joh", 2).stream().map(UserListDTO::userId).toList());
+        assertTrue(usernameIndex.findByPrefix("x", 10).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Updates replace the entry and deletes remove it")
+    void userSavedAndDeleted_KeepIndexCurrent() {
+        usernameIndex.userSaved(new UserListDTO(1L, "Johanna", null));
+        usernameIndex.userSaved(new UserListDTO(1L, "Johanna", "/images/new.png"));
+
+        assertEquals(List.of(new UserListDTO(1L, "Johanna", "/images/new.png")), usernameIndex.findByPrefix("jo", 10));
+
+        usernameIndex.userDeleted(1L);
+
+        assertTrue(usernameIndex.findByPrefix("jo", 10).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Index reports itself incomplete when the memory budget is reached")
+    void userSaved_MarksIncomplete_WhenOverBudget() {
+        ReflectionTestUtils.setField(usernameIndex, "maxMemoryMb", 0L);
+
+        usernameIndex.userSaved(new UserListDTO(1L, "Johanna", null));
+
+        assertFalse(usernameIndex.isComplete());
+        assertTrue(usernameIndex.findByPrefix("jo", 10).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Reload sorts users from the database into the packed array")
+    void reload_IndexesAllUsersInUsernameOrder() {
+        when(userRepository.streamUserListDTOs()).thenReturn(Stream.of(
+                new UserListDTO(1L, "Örjan", "/images/1.png"),
+                new UserListDTO(2L, "anna", null),
+                new UserListDTO(3L, "Anders", null),
+                new UserListDTO(4L, "Anna", "")));
+
+        usernameIndex.reload();
+
+        assertTrue(usernameIndex.isComplete());
+        assertEquals(List.of(new UserListDTO(3L, "Anders", null), new UserListDTO(2L, "anna", null), new UserListDTO(4L, "Anna", null)),
+                usernameIndex.findByPrefix("an", 10));
+        assertEquals(List.of(new UserListDTO(1L, "Örjan", "/images/1.png")), usernameIndex.findByPrefix("ö", 10));
+    }
+
+    @Test
+    @DisplayName("Changes stay correct across folding the overlay into the array")
+    void userSaved_FoldsChangesIntoArray() {
+        when(userRepository.streamUserListDTOs()).thenReturn(LongStream.rangeClosed(1, 100)
+                .mapToObj(id -> new UserListDTO(id, "user" + id, null)));
+        usernameIndex.reload();
+
+        // Enough changes to fold the overlay more than once
+        IntStream.rangeClosed(101, 100 + UsernameIndex.MAX_PENDING_CHANGES)
+                .forEach(id -> usernameIndex.userSaved(new UserListDTO((long) id, "user" + id, null)));
+        usernameIndex.userSaved(new UserListDTO(1L, "renamed", "/images/1.png"));
+        usernameIndex.userDeleted(2L);
+
+        assertEquals(List.of(10L, 100L, 1000L, 1001L), usernameIndex.findByPrefix("user10", 4).stream().map(UserListDTO::userId).toList());
+        assertTrue(usernameIndex.findByPrefix("user2", 10).stream().noneMatch(user -> user.userId() == 2L));
+        assertEquals(List.of(new UserListDTO(1L, "renamed", "/images/1.png")), usernameIndex.findByPrefix("ren", 10));
+        assertTrue(usernameIndex.findByPrefix("user1", 1100).stream().noneMatch(user -> user.userId() == 1L));
+        assertEquals(98 + UsernameIndex.MAX_PENDING_CHANGES, usernameIndex.findByPrefix("user", 2000).size());
+    }
+}
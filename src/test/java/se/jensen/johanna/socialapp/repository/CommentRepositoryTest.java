@@ -0,0 +1,104 @@
+package se.jensen.johanna.socialapp.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import se.jensen.johanna.socialapp.model.Comment;
+import se.jensen.johanna.socialapp.model.Post;
+import se.jensen.johanna.socialapp.model.Role;
+import se.jensen.johanna.socialapp.model.User;
+import se.jensen.johanna.socialapp.repository.CommentRepository.CommentTreeRow;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+class CommentRepositoryTest {
+    private static final int WIDE_THREAD_REPLIES = 500;
+
+    @Autowired
+    private CommentRepository commentRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private User user;
+    private Post post;
+    private Comment viral;
+    private Comment quiet;
+
+    @BeforeEach
+    void setUp() {
+        user = new User();
+        user.setUsername("johanna");
+        user.setEmail("johanna@example.com");
+        user.setPassword("hashed");
+        user.setRole(Role.MEMBER);
+        entityManager.persist(user);
+
+        post = new Post();
+        post.setText("Post");
+        post.setUser(user);
+        entityManager.persist(post);
+
+        viral = mainComment("Viral");
+        quiet = mainComment("Quiet");
+        for (int i = 0; i < WIDE_THREAD_REPLIES; i++) {
+            reply(viral, "Reply " + i);
+        }
+        reply(reply(quiet, "Only reply"), "Nested reply");
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    @DisplayName("A wide thread returns at most the requested number of replies per comment")
+    void findFirstReplies_IsBoundedPerComment() {
+        List<CommentTreeRow> rows = commentRepository.findFirstReplies(
+                List.of(viral.getCommentId(), quiet.getCommentId()), 10);
+
+        Map<Long, Long> perParent = rows.stream()
+                .collect(Collectors.groupingBy(CommentTreeRow::getParentId, Collectors.counting()));
+        assertEquals(11, rows.size());
+        assertEquals(10L, perParent.get(viral.getCommentId()));
+        assertEquals(1L, perParent.get(quiet.getCommentId()));
+        assertTrue(rows.stream().allMatch(row -> "johanna".equals(row.getUsername())));
+    }
+
+    @Test
+    @DisplayName("Replies are the oldest ones, in creation order")
+    void findFirstReplies_ReturnsOldestFirst() {
+        List<CommentTreeRow> rows = commentRepository.findFirstReplies(List.of(viral.getCommentId()), 3);
+
+        assertEquals(List.of("Reply 0", "Reply 1", "Reply 2"), rows.stream().map(CommentTreeRow::getText).toList());
+    }
+
+    @Test
+    @DisplayName("Counting a thread includes replies at every depth and nothing outside it")
+    void countSubtree_CountsAllDescendants() {
+        assertEquals(WIDE_THREAD_REPLIES, commentRepository.countSubtree(viral.getSubtreePath()));
+        assertEquals(2, commentRepository.countSubtree(quiet.getSubtreePath()));
+    }
+
+    private Comment mainComment(String text) {
+        Comment comment = new Comment();
+        comment.setText(text);
+        comment.setUser(user);
+        comment.setPost(post);
+        return entityManager.persist(comment);
+    }
+
+    private Comment reply(Comment parent, String text) {
+        Comment reply = new Comment();
+        reply.setText(text);
+        reply.setUser(user);
+        parent.addReply(reply);
+        return entityManager.persist(reply);
+    }
+}
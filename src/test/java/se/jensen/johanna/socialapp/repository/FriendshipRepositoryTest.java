@@ -0,0 +1,98 @@
+package se.jensen.johanna.socialapp.repository;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import se.jensen.johanna.socialapp.index.FriendGraph;
+import se.jensen.johanna.socialapp.model.Friendship;
+import se.jensen.johanna.socialapp.model.FriendshipStatus;
+import se.jensen.johanna.socialapp.model.Role;
+import se.jensen.johanna.socialapp.model.User;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+class FriendshipRepositoryTest {
+
+    @Autowired
+    private FriendshipRepository friendshipRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private Long friendshipId;
+    private Long senderId;
+    private Long receiverId;
+
+    @BeforeEach
+    void setUp() {
+        User sender = persistUser("sender");
+        User receiver = persistUser("receiver");
+        Friendship friendship = new Friendship();
+        friendship.setSender(sender);
+        friendship.setReceiver(receiver);
+        entityManager.persist(friendship);
+        entityManager.flush();
+        entityManager.clear();
+
+        friendshipId = friendship.getFriendshipId();
+        senderId = sender.getUserId();
+        receiverId = receiver.getUserId();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    @DisplayName("Friendship state for authorization checks is read without loading any entity")
+    void findEdgeById_LoadsNoEntities() {
+        FriendGraph.Edge edge = friendshipRepository.findEdgeById(friendshipId).orElseThrow();
+
+        assertEquals(senderId, edge.senderId());
+        assertEquals(receiverId, edge.receiverId());
+        assertEquals(FriendshipStatus.PENDING, edge.status());
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+
+    @Test
+    @DisplayName("Loading a friendship entity does not load its users")
+    void findById_DoesNotLoadUsers() {
+        Friendship friendship = friendshipRepository.findById(friendshipId).orElseThrow();
+
+        assertEquals(senderId, friendship.getSenderId());
+        assertEquals(1, statistics.getEntityLoadCount());
+    }
+
+    @Test
+    @DisplayName("Accepting only succeeds while the request is pending")
+    void acceptPending_OnlyMatchesPendingRequest() {
+        assertEquals(1, friendshipRepository.acceptPending(friendshipId, LocalDateTime.now()));
+        assertEquals(0, friendshipRepository.acceptPending(friendshipId, LocalDateTime.now()));
+        assertEquals(0, friendshipRepository.deleteByIdAndStatus(friendshipId, FriendshipStatus.PENDING));
+        assertEquals(1, friendshipRepository.deleteByIdAndStatus(friendshipId, FriendshipStatus.ACCEPTED));
+    }
+
+    private User persistUser(String username) {
+        User user = new User();
+        user.setUsername(username);
+        user.setEmail(username + "@example.com");
+        user.setPassword("hashed");
+        user.setRole(Role.MEMBER);
+        return entityManager.persist(user);
+    }
+}
@@ -0,0 +1,110 @@
+package se.jensen.johanna.socialapp.repository;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import se.jensen.johanna.socialapp.dto.PostDTO;
+import se.jensen.johanna.socialapp.model.Post;
+import se.jensen.johanna.socialapp.model.Role;
+import se.jensen.johanna.socialapp.model.User;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+class PostRepositoryTest {
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        // One author per post, so per-row author loading would show up as extra statements
+        for (int i = 0; i < 25; i++) {
+            User user = new User();
+            user.setUsername("user" + i);
+            user.setEmail("user" + i + "@example.com");
+            user.setPassword("hashed");
+            user.setRole(Role.MEMBER);
+            user.setProfileImagePath("/images/" + i + ".png");
+            entityManager.persist(user);
+
+            Post post = new Post();
+            post.setText("Post " + i);
+            post.setUser(user);
+            entityManager.persist(post);
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    @DisplayName("Post page with authors costs one select and one count regardless of page size")
+    void findAllPostDTOs_UsesConstantStatementCount() {
+        for (int size : new int[]{1, 10, 25}) {
+            statistics.clear();
+
+            Page<PostDTO> page = postRepository.findAllPostDTOs(
+                    PageRequest.of(0, size, Sort.by(Sort.Direction.DESC, "createdAt")));
+
+            assertEquals(size, page.getNumberOfElements());
+            assertEquals(25, page.getTotalElements());
+            page.forEach(post -> assertNotNull(post.username()));
+            assertEquals(2, statistics.getPrepareStatementCount(), "statements for page size " + size);
+        }
+    }
+
+    @Test
+    @DisplayName("Single post with author costs one select")
+    void findPostDTOById_UsesSingleStatement() {
+        Long postId = postRepository.findAll().get(0).getPostId();
+        statistics.clear();
+
+        PostDTO post = postRepository.findPostDTOById(postId).orElseThrow();
+
+        assertNotNull(post.username());
+        assertNotNull(post.profileImagePath());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    @DisplayName("Cursor page with authors costs one select")
+    void findLatest_UsesSingleStatement() {
+        List<PostDTO> posts = postRepository.findLatest(PageRequest.ofSize(11));
+
+        assertEquals(11, posts.size());
+        assertEquals(1, statistics.getPrepareStatementCount());
+
+        statistics.clear();
+        PostDTO last = posts.get(posts.size() - 1);
+        List<PostDTO> next = postRepository.findLatestBefore(last.createdAt(), last.postId(), PageRequest.ofSize(11));
+
+        assertEquals(11, next.size());
+        assertTrue(next.stream().noneMatch(posts::contains));
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+}
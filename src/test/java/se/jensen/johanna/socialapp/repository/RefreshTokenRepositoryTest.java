@@ -0,0 +1,128 @@
+package se.jensen.johanna.socialapp.repository;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import se.jensen.johanna.socialapp.dto.RefreshTokenSession;
+import se.jensen.johanna.socialapp.model.RefreshToken;
+import se.jensen.johanna.socialapp.model.Role;
+import se.jensen.johanna.socialapp.model.User;
+import se.jensen.johanna.socialapp.util.TokenHashUtils;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+class RefreshTokenRepositoryTest {
+
+    @Autowired
+    private RefreshTokenRepository refreshTokenRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Test
+    @DisplayName("Sessions are found by token hash together with the user's identity")
+    void findSessionByTokenHash_ReturnsUserIdentity() {
+        User user = persistToken("johanna", "token-1", Instant.now().plus(1, ChronoUnit.DAYS));
+
+        RefreshTokenSession session = refreshTokenRepository.findSessionByTokenHash(TokenHashUtils.sha256Hex("token-1")).orElseThrow();
+
+        assertEquals(user.getUserId(), session.userId());
+        assertEquals("johanna", session.username());
+        assertEquals(Role.MEMBER, session.role());
+        assertTrue(refreshTokenRepository.findSessionByTokenHash("token-1").isEmpty());
+    }
+
+    @Test
+    @DisplayName("Expired tokens are purged in chunks and valid tokens are kept")
+    void deleteExpiredBatch_DeletesOnlyExpiredInChunks() {
+        Instant now = Instant.now();
+        for (int i = 0; i < 5; i++) {
+            persistToken("expired" + i, "expired-" + i, now.minus(1, ChronoUnit.HOURS));
+        }
+        persistToken("valid", "valid", now.plus(1, ChronoUnit.HOURS));
+
+        assertEquals(2, refreshTokenRepository.deleteExpiredBatch(now, 2));
+        assertEquals(2, refreshTokenRepository.deleteExpiredBatch(now, 2));
+        assertEquals(1, refreshTokenRepository.deleteExpiredBatch(now, 2));
+        assertEquals(0, refreshTokenRepository.deleteExpiredBatch(now, 2));
+        assertEquals(1, refreshTokenRepository.count());
+    }
+
+    @Test
+    @DisplayName("A token can be rotated once, and never after it expired")
+    void rotate_SucceedsOnceForValidToken() {
+        Instant now = Instant.now();
+        persistToken("johanna", "old", now.plus(1, ChronoUnit.DAYS));
+        persistToken("marcel", "expired", now.minus(1, ChronoUnit.DAYS));
+        String oldHash = TokenHashUtils.sha256Hex("old");
+        String newHash = TokenHashUtils.sha256Hex("new");
+        Instant expiryDate = now.plus(7, ChronoUnit.DAYS);
+
+        assertEquals(1, refreshTokenRepository.rotate(oldHash, newHash, expiryDate, now));
+        assertEquals(0, refreshTokenRepository.rotate(oldHash, TokenHashUtils.sha256Hex("other"), expiryDate, now));
+        assertEquals(0, refreshTokenRepository.rotate(TokenHashUtils.sha256Hex("expired"), TokenHashUtils.sha256Hex("other"), expiryDate, now));
+
+        entityManager.clear();
+        assertEquals("johanna", refreshTokenRepository.findSessionByTokenHash(newHash).orElseThrow().username());
+        assertTrue(refreshTokenRepository.findSessionByTokenHash(oldHash).isEmpty());
+    }
+
+    @Test
+    @DisplayName("A rotated token still finds its session within the grace window and revokes it on logout")
+    void findSessionByPreviousTokenHash_OnlyWithinGraceWindow() {
+        Instant now = Instant.now();
+        persistToken("johanna", "old", now.plus(1, ChronoUnit.DAYS));
+        String oldHash = TokenHashUtils.sha256Hex("old");
+        refreshTokenRepository.rotate(oldHash, TokenHashUtils.sha256Hex("new"), now.plus(7, ChronoUnit.DAYS), now);
+        entityManager.clear();
+
+        assertEquals("johanna", refreshTokenRepository.findSessionByPreviousTokenHash(oldHash, now.minusSeconds(30))
+                .orElseThrow().username());
+        assertTrue(refreshTokenRepository.findSessionByPreviousTokenHash(oldHash, now.plusSeconds(1)).isEmpty());
+
+        assertEquals(1, refreshTokenRepository.deleteByTokenHash(oldHash));
+        assertEquals(0, refreshTokenRepository.count());
+    }
+
+    @Test
+    @DisplayName("Every device of a user keeps its own session")
+    void findSessionByTokenHash_KeepsSessionPerDevice() {
+        User user = persistToken("johanna", "laptop", Instant.now().plus(1, ChronoUnit.DAYS));
+        RefreshToken phone = new RefreshToken();
+        phone.setUser(user);
+        phone.setDeviceId("phone");
+        phone.setTokenHash(TokenHashUtils.sha256Hex("phone"));
+        phone.setExpiryDate(Instant.now().plus(1, ChronoUnit.DAYS));
+        entityManager.persistAndFlush(phone);
+
+        refreshTokenRepository.deleteByTokenHash(TokenHashUtils.sha256Hex("laptop"));
+
+        assertTrue(refreshTokenRepository.findSessionByTokenHash(TokenHashUtils.sha256Hex("laptop")).isEmpty());
+        assertEquals(user.getUserId(), refreshTokenRepository.findSessionByTokenHash(TokenHashUtils.sha256Hex("phone"))
+                .orElseThrow().userId());
+    }
+
+    private User persistToken(String username, String token, Instant expiryDate) {
+        User user = new User();
+        user.setUsername(username);
+        user.setEmail(username + "@example.com");
+        user.setPassword("hashed");
+        user.setRole(Role.MEMBER);
+        entityManager.persist(user);
+
+        RefreshToken refreshToken = new RefreshToken();
+        refreshToken.setUser(user);
+        refreshToken.setDeviceId(token);
+        refreshToken.setTokenHash(TokenHashUtils.sha256Hex(token));
+        refreshToken.setExpiryDate(expiryDate);
+        entityManager.persist(refreshToken);
+        entityManager.flush();
+        return user;
+    }
+}
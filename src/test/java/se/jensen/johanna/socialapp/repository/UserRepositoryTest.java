@@ -0,0 +1,73 @@
+package se.jensen.johanna.socialapp.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import se.jensen.johanna.socialapp.dto.UserDTO;
+import se.jensen.johanna.socialapp.dto.UserListDTO;
+import se.jensen.johanna.socialapp.model.Role;
+import se.jensen.johanna.socialapp.model.User;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+class UserRepositoryTest {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @BeforeEach
+    void setUp() {
+        for (String username : new String[]{"Anna", "Johanna", "jo_hanna", "Marcel"}) {
+            User user = new User();
+            user.setUsername(username);
+            user.setEmail(username + "@example.com");
+            user.setPassword("hashed");
+            user.setRole(Role.MEMBER);
+            entityManager.persist(user);
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    @DisplayName("Search matches lower-cased usernames and treats escaped wildcards literally")
+    void searchByUsername_MatchesLowerCaseAndEscapedWildcards() {
+        PageRequest page = PageRequest.of(0, 10, Sort.by("username"));
+
+        Slice<UserDTO> substring = userRepository.searchByUsername("%anna%", page);
+        assertEquals(3, substring.getNumberOfElements());
+        assertFalse(substring.hasNext());
+        assertEquals("Anna", substring.getContent().get(0).username());
+        assertNull(substring.getContent().get(0).mutualFriendCount());
+
+        assertEquals(1, userRepository.searchByUsername("jo\\_%", page).getNumberOfElements());
+        assertEquals(0, userRepository.searchByUsername("%\\%%", page).getNumberOfElements());
+        assertTrue(userRepository.searchByUsername("%anna%", PageRequest.of(0, 2, Sort.by("username"))).hasNext());
+    }
+
+    @Test
+    @DisplayName("Directory pages continue after the cursor id and the stream returns every user in id order")
+    void directory_PagesAndStreamsInIdOrder() {
+        List<UserListDTO> first = userRepository.findFirstUserListDTOs(PageRequest.ofSize(2));
+        List<UserListDTO> second = userRepository.findUserListDTOsAfter(first.get(1).userId(), PageRequest.ofSize(2));
+
+        assertEquals(List.of("Anna", "Johanna"), first.stream().map(UserListDTO::username).toList());
+        assertEquals(List.of("jo_hanna", "Marcel"), second.stream().map(UserListDTO::username).toList());
+        try (Stream<UserListDTO> all = userRepository.streamUserListDTOs()) {
+            assertEquals(4, all.count());
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package se.jensen.johanna.socialapp.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import se.jensen.johanna.socialapp.exception.ServiceBusyException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class BoundedPasswordEncoderTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    @DisplayName("Hashing runs on the pool and is timed")
+    void encode_DelegatesAndRecordsLatency() {
+        PasswordEncoder delegate = mock(PasswordEncoder.class);
+        when(delegate.encode("secret")).thenReturn("hashed");
+        when(delegate.matches("secret", "hashed")).thenReturn(true);
+
+        try (BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(delegate, 2, 4, 1, meterRegistry)) {
+            assertEquals("hashed", encoder.encode("secret"));
+            assertTrue(encoder.matches("secret", "hashed"));
+        }
+        assertEquals(1, meterRegistry.get("auth.password.hash").tag("operation", "encode").timer().count());
+        assertEquals(1, meterRegistry.get("auth.password.hash").tag("operation", "matches").timer().count());
+    }
+
+    @Test
+    @DisplayName("Calls beyond the pool and queue fail fast with ServiceBusyException")
+    void encode_QueueFull_Rejects() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        PasswordEncoder delegate = mock(PasswordEncoder.class);
+        when(delegate.encode(any())).thenAnswer(invocation -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return "hashed";
+        });
+
+        try (BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(delegate, 1, 1, 3, meterRegistry)) {
+            CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> encoder.encode("a"));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> encoder.encode("b"));
+            while (meterRegistry.get("auth.password.queue.depth").gauge().value() < 1) {
+                Thread.onSpinWait();
+            }
+
+            ServiceBusyException e = assertThrows(ServiceBusyException.class, () -> encoder.encode("c"));
+            assertEquals(3, e.getRetryAfterSeconds());
+            assertEquals(1, meterRegistry.get("auth.password.rejected").counter().count());
+
+            release.countDown();
+            assertEquals("hashed", running.get(5, TimeUnit.SECONDS));
+            assertEquals("hashed", queued.get(5, TimeUnit.SECONDS));
+        }
+    }
+}
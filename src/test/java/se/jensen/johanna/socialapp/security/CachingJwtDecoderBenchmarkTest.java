@@ -0,0 +1,77 @@
+package se.jensen.johanna.socialapp.security;
+
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.jose.jws.SignatureAlgorithm;
+import org.springframework.security.oauth2.jwt.JwsHeader;
+import org.springframework.security.oauth2.jwt.JwtClaimsSet;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtEncoderParameters;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.security.oauth2.jwt.NimbusJwtEncoder;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Compares the per-request cost of authenticating a repeat access token with and without {@link CachingJwtDecoder}.
+ * Wall-clock timing depends on the machine, so it only reports and is left out of the regular test run;
+ * run it with {@code mvn test -Pbenchmark}.
+ */
+@Slf4j
+@Tag("benchmark")
+class CachingJwtDecoderBenchmarkTest {
+    private static final int WARMUP_ITERATIONS = 2_000;
+    private static final int MEASURED_ITERATIONS = 5_000;
+
+    @Test
+    @DisplayName("Per-request cost of decoding a repeat token, uncached and cached")
+    void decode_RepeatToken_UncachedVersusCached() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        KeyPair keyPair = generator.generateKeyPair();
+        RSAKey rsaKey = new RSAKey.Builder((RSAPublicKey) keyPair.getPublic())
+                .privateKey((RSAPrivateKey) keyPair.getPrivate())
+                .build();
+        JWKSet jwkSet = new JWKSet(rsaKey);
+        NimbusJwtEncoder encoder = new NimbusJwtEncoder((jwkSelector, context) -> jwkSelector.select(jwkSet));
+        JwtDecoder verifier = NimbusJwtDecoder.withPublicKey((RSAPublicKey) keyPair.getPublic()).build();
+        JwtDecoder cached = new CachingJwtDecoder(verifier, 100, new SimpleMeterRegistry());
+
+        JwtClaimsSet claims = JwtClaimsSet.builder()
+                .issuer("self")
+                .issuedAt(Instant.now())
+                .expiresAt(Instant.now().plus(15, ChronoUnit.MINUTES))
+                .subject("johanna")
+                .claim("scope", "ROLE_MEMBER")
+                .build();
+        String token = encoder.encode(JwtEncoderParameters.from(JwsHeader.with(SignatureAlgorithm.RS256).build(), claims))
+                .getTokenValue();
+
+        timePerDecode(verifier, token, WARMUP_ITERATIONS);
+        timePerDecode(cached, token, WARMUP_ITERATIONS);
+        long uncachedNanos = timePerDecode(verifier, token, MEASURED_ITERATIONS);
+        long cachedNanos = timePerDecode(cached, token, MEASURED_ITERATIONS);
+
+        log.info("JWT decode per request over {} iterations: uncached {} ns, cached {} ns ({}x)",
+                MEASURED_ITERATIONS, uncachedNanos, cachedNanos,
+                String.format("%.1f", (double) uncachedNanos / Math.max(1, cachedNanos)));
+    }
+
+    private static long timePerDecode(JwtDecoder decoder, String token, int iterations) {
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            decoder.decode(token);
+        }
+        return (System.nanoTime() - start) / iterations;
+    }
+}
@@ -0,0 +1,96 @@
+package se.jensen.johanna.socialapp.security;
+
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.jose.jws.SignatureAlgorithm;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.JwsHeader;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtClaimsSet;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtEncoderParameters;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.security.oauth2.jwt.NimbusJwtEncoder;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class CachingJwtDecoderTest {
+
+    private static NimbusJwtEncoder encoder;
+    private static NimbusJwtDecoder verifier;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @BeforeAll
+    static void setUpKeys() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        KeyPair keyPair = generator.generateKeyPair();
+        RSAKey rsaKey = new RSAKey.Builder((RSAPublicKey) keyPair.getPublic())
+                .privateKey((RSAPrivateKey) keyPair.getPrivate())
+                .keyID("test-key")
+                .build();
+        JWKSet jwkSet = new JWKSet(rsaKey);
+        encoder = new NimbusJwtEncoder((jwkSelector, context) -> jwkSelector.select(jwkSet));
+        verifier = NimbusJwtDecoder.withPublicKey((RSAPublicKey) keyPair.getPublic()).build();
+    }
+
+    @Test
+    @DisplayName("A repeat token is answered from the cache without verifying it again")
+    void decode_RepeatToken_SkipsDelegate() {
+        JwtDecoder delegate = spy(verifier);
+        CachingJwtDecoder decoder = new CachingJwtDecoder(delegate, 100, meterRegistry);
+        String token = createToken("johanna", Instant.now().plus(15, ChronoUnit.MINUTES));
+
+        Jwt first = decoder.decode(token);
+        Jwt second = decoder.decode(token);
+
+        assertSame(first, second);
+        assertEquals("johanna", second.getSubject());
+        verify(delegate, times(1)).decode(token);
+        assertEquals(1, meterRegistry.get("cache.gets").tag("cache", CachingJwtDecoder.METRIC_NAME)
+                .tag("result", "hit").functionCounter().count());
+    }
+
+    @Test
+    @DisplayName("Invalid tokens and tokens without expiry are never cached")
+    void decode_InvalidOrUnboundedToken_NotCached() {
+        JwtDecoder delegate = spy(verifier);
+        CachingJwtDecoder decoder = new CachingJwtDecoder(delegate, 100, meterRegistry);
+        String tampered = createToken("johanna", Instant.now().plus(15, ChronoUnit.MINUTES)) + "x";
+        String unbounded = createToken("marcel", null);
+
+        assertThrows(BadJwtException.class, () -> decoder.decode(tampered));
+        assertThrows(BadJwtException.class, () -> decoder.decode(tampered));
+        decoder.decode(unbounded);
+        decoder.decode(unbounded);
+
+        verify(delegate, times(2)).decode(tampered);
+        verify(delegate, times(2)).decode(unbounded);
+    }
+
+    private static String createToken(String subject, Instant expiresAt) {
+        JwtClaimsSet.Builder claims = JwtClaimsSet.builder()
+                .issuer("self")
+                .issuedAt(Instant.now())
+                .subject(subject)
+                .claim("scope", "ROLE_MEMBER");
+        if (expiresAt != null) {
+            claims.expiresAt(expiresAt);
+        }
+        JwsHeader header = JwsHeader.with(SignatureAlgorithm.RS256).build();
+        return encoder.encode(JwtEncoderParameters.from(header, claims.build())).getTokenValue();
+    }
+}
@@ -7,6 +7,12 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+import se.jensen.johanna.socialapp.dto.CommentDTO;
 import se.jensen.johanna.socialapp.dto.CommentRequest;
 import se.jensen.johanna.socialapp.dto.UpdateCommentResponse;
 import se.jensen.johanna.socialapp.exception.ForbiddenException;
@@ -15,8 +21,10 @@ import se.jensen.johanna.socialapp.mapper.CommentMapper;
 import se.jensen.johanna.socialapp.model.Comment;
 import se.jensen.johanna.socialapp.model.User;
 import se.jensen.johanna.socialapp.repository.CommentRepository;
+import se.jensen.johanna.socialapp.repository.CommentRepository.CommentTreeRow;
 
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -109,4 +117,139 @@ class CommentServiceTest {
 
 
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Should assemble nested replies from one query per level")
+    void findCommentTree_ShouldAssembleTree_FromFlatRows() {
+        //Arrange
+        ReflectionTestUtils.setField(commentService, "maxTreeDepth", 5);
+        Pageable pageable = PageRequest.of(0, 10);
+        existingComment.setText("Main comment");
+        when(commentRepository.findMainCommentsWithUser(1L, pageable))
+                .thenReturn(new PageImpl<>(List.of(existingComment), pageable, 1));
+        when(commentRepository.findFirstReplies(List.of(2L), 11)).thenReturn(List.of(
+                new Row(3L, 2L), new Row(5L, 2L)));
+        when(commentRepository.findFirstReplies(List.of(3L, 5L), 11)).thenReturn(List.of(
+                new Row(4L, 3L)));
+
+        //Act
+        Page<CommentDTO> tree = commentService.findCommentTree(1L, 3, pageable);
+
+        //Assert
+        CommentDTO main = tree.getContent().get(0);
+        assertEquals(2, main.replies().size());
+        assertEquals(3L, main.replies().get(0).commentId());
+        assertEquals(4L, main.replies().get(0).replies().get(0).commentId());
+        assertEquals(5L, main.replies().get(1).commentId());
+        assertTrue(main.replies().get(1).replies().isEmpty());
+        assertFalse(main.hasMoreReplies());
+
+        //Verify the lazy replies collection is never used for loading
+        verifyNoInteractions(commentMapper);
+    }
+
+    @Test
+    @DisplayName("Should cap replies per comment on a wide thread and mark the rest")
+    void findCommentTree_ShouldCapReplies_OnWideThread() {
+        //Arrange
+        ReflectionTestUtils.setField(commentService, "maxTreeDepth", 5);
+        ReflectionTestUtils.setField(commentService, "repliesPerLevel", 2);
+        Pageable pageable = PageRequest.of(0, 10);
+        when(commentRepository.findMainCommentsWithUser(1L, pageable))
+                .thenReturn(new PageImpl<>(List.of(existingComment), pageable, 1));
+        when(commentRepository.findFirstReplies(List.of(2L), 3)).thenReturn(List.of(
+                new Row(3L, 2L), new Row(4L, 2L), new Row(5L, 2L)));
+        when(commentRepository.findFirstReplies(List.of(3L, 4L), 1)).thenReturn(List.of(
+                new Row(6L, 4L)));
+
+        //Act
+        Page<CommentDTO> tree = commentService.findCommentTree(1L, 1, pageable);
+
+        //Assert
+        CommentDTO main = tree.getContent().get(0);
+        assertEquals(List.of(3L, 4L), main.replies().stream().map(CommentDTO::commentId).toList());
+        assertTrue(main.hasMoreReplies());
+        assertFalse(main.replies().get(0).hasMoreReplies());
+        assertTrue(main.replies().get(1).hasMoreReplies());
+        assertTrue(main.replies().get(1).replies().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should stop loading replies once the total limit is reached")
+    void findThread_ShouldStopAtTotalReplyLimit() {
+        //Arrange
+        ReflectionTestUtils.setField(commentService, "maxTreeDepth", 5);
+        ReflectionTestUtils.setField(commentService, "maxTreeReplies", 3);
+        existingComment.setPath("/");
+        when(commentRepository.findById(2L)).thenReturn(Optional.of(existingComment));
+        when(commentRepository.findFirstReplies(List.of(2L), 4)).thenReturn(List.of(
+                new Row(3L, 2L), new Row(4L, 2L)));
+        when(commentRepository.findFirstReplies(List.of(3L, 4L), 2)).thenReturn(List.of(
+                new Row(5L, 3L), new Row(6L, 3L), new Row(7L, 4L)));
+
+        //Act
+        CommentDTO thread = commentService.findThread(2L, 5);
+
+        //Assert
+        assertEquals(2, thread.replies().size());
+        assertEquals(List.of(5L), thread.replies().get(0).replies().stream().map(CommentDTO::commentId).toList());
+        assertTrue(thread.replies().get(0).hasMoreReplies());
+        assertTrue(thread.replies().get(1).hasMoreReplies());
+        verify(commentRepository).findFirstReplies(List.of(5L), 1);
+    }
+
+    @Test
+    @DisplayName("Should cap requested depth and only check for replies at depth zero")
+    void findCommentTree_ShouldNotLoadReplies_WhenDepthIsZero() {
+        //Arrange
+        Pageable pageable = PageRequest.of(0, 10);
+        when(commentRepository.findMainCommentsWithUser(1L, pageable))
+                .thenReturn(new PageImpl<>(List.of(existingComment), pageable, 1));
+        when(commentRepository.findFirstReplies(List.of(2L), 1)).thenReturn(List.of(new Row(3L, 2L)));
+
+        //Act
+        Page<CommentDTO> tree = commentService.findCommentTree(1L, 10, pageable);
+
+        //Assert
+        assertTrue(tree.getContent().get(0).replies().isEmpty());
+        assertTrue(tree.getContent().get(0).hasMoreReplies());
+        verify(commentRepository, times(1)).findFirstReplies(any(), anyInt());
+    }
+
+    private record Row(Long commentId, Long parentId) implements CommentTreeRow {
+        @Override
+        public Long getCommentId() {
+            return commentId;
+        }
+
+        @Override
+        public Long getParentId() {
+            return parentId;
+        }
+
+        @Override
+        public Long getUserId() {
+            return 1L;
+        }
+
+        @Override
+        public String getUsername() {
+            return "owner";
+        }
+
+        @Override
+        public String getText() {
+            return "Reply " + commentId;
+        }
+
+        @Override
+        public LocalDateTime getCreatedAt() {
+            return LocalDateTime.now();
+        }
+
+        @Override
+        public LocalDateTime getUpdatedAt() {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package se.jensen.johanna.socialapp.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import se.jensen.johanna.socialapp.dto.FriendResponseDTO;
+import se.jensen.johanna.socialapp.exception.IllegalFriendshipStateException;
+import se.jensen.johanna.socialapp.exception.NotFoundException;
+import se.jensen.johanna.socialapp.index.FriendGraph;
+import se.jensen.johanna.socialapp.index.UserSummaryCache;
+import se.jensen.johanna.socialapp.model.FriendshipStatus;
+import se.jensen.johanna.socialapp.repository.FriendshipRepository;
+import se.jensen.johanna.socialapp.util.CursorUtils;
+
+import java.sql.SQLException;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class FriendshipServiceTest {
+
+    @Mock
+    private FriendshipRepository friendshipRepository;
+
+    @Mock
+    private UserSummaryCache userSummaryCache;
+
+    @Mock
+    private FeedService feedService;
+
+    @Mock
+    private FriendGraph friendGraph;
+
+    @Mock
+    private CursorUtils cursorUtils;
+
+    @InjectMocks
+    private FriendshipService friendshipService;
+
+    @Test
+    void sendFriendRequest_Success() {
+        when(friendshipRepository.insertRequest(1L, 2L)).thenReturn(Optional.of(10L));
+
+        FriendResponseDTO response = friendshipService.sendFriendRequest(1L, 2L);
+
+        assertEquals(10L, response.friendshipId());
+        assertEquals(FriendshipStatus.PENDING, response.status());
+        verify(friendGraph).requestSent(10L, 1L, 2L);
+    }
+
+    @Test
+    void sendFriendRequest_Duplicate_ThrowsIllegalState() {
+        when(friendshipRepository.insertRequest(1L, 2L)).thenReturn(Optional.empty());
+
+        assertThrows(IllegalFriendshipStateException.class, () -> friendshipService.sendFriendRequest(1L, 2L));
+        verify(friendGraph, never()).requestSent(anyLong(), anyLong(), anyLong());
+    }
+
+    @Test
+    void sendFriendRequest_ReverseDirectionOfExistingRequest_ThrowsIllegalState() {
+        // 1 already asked 2; the pair conflicts on (low_user_id, high_user_id) when 2 asks 1 back
+        when(friendshipRepository.insertRequest(2L, 1L)).thenReturn(Optional.empty());
+
+        assertThrows(IllegalFriendshipStateException.class, () -> friendshipService.sendFriendRequest(2L, 1L));
+        verify(friendGraph, never()).requestSent(anyLong(), anyLong(), anyLong());
+    }
+
+    @Test
+    void sendFriendRequest_UnknownReceiver_ThrowsNotFound() {
+        when(friendshipRepository.insertRequest(1L, 99L)).thenThrow(violation("23503"));
+
+        assertThrows(NotFoundException.class, () -> friendshipService.sendFriendRequest(1L, 99L));
+    }
+
+    @Test
+    void sendFriendRequest_OtherConstraintViolation_IsNotReportedAsNotFound() {
+        DataIntegrityViolationException violation = violation("23502");
+        when(friendshipRepository.insertRequest(1L, 2L)).thenThrow(violation);
+
+        assertSame(violation, assertThrows(DataIntegrityViolationException.class,
+                () -> friendshipService.sendFriendRequest(1L, 2L)));
+    }
+
+    @Test
+    void acceptFriendRequest_DeletedConcurrently_ReportsWithdrawn() {
+        when(friendshipRepository.findEdgeById(10L))
+                .thenReturn(Optional.of(new FriendGraph.Edge(10L, 1L, 2L, FriendshipStatus.PENDING)))
+                .thenReturn(Optional.empty());
+        when(friendshipRepository.acceptPending(eq(10L), any())).thenReturn(0);
+
+        IllegalFriendshipStateException e = assertThrows(IllegalFriendshipStateException.class,
+                () -> friendshipService.acceptFriendRequest(10L, 2L));
+        assertEquals("This request was withdrawn or rejected and no longer exists.", e.getMessage());
+        verify(feedService, never()).link(anyLong(), anyLong());
+        verify(friendGraph, never()).requestAccepted(anyLong(), anyLong(), anyLong());
+    }
+
+    @Test
+    void acceptFriendRequest_AcceptedConcurrently_ReportsAccepted() {
+        when(friendshipRepository.findEdgeById(10L))
+                .thenReturn(Optional.of(new FriendGraph.Edge(10L, 1L, 2L, FriendshipStatus.PENDING)))
+                .thenReturn(Optional.of(new FriendGraph.Edge(10L, 1L, 2L, FriendshipStatus.ACCEPTED)));
+        when(friendshipRepository.acceptPending(eq(10L), any())).thenReturn(0);
+
+        IllegalFriendshipStateException e = assertThrows(IllegalFriendshipStateException.class,
+                () -> friendshipService.acceptFriendRequest(10L, 2L));
+        assertEquals("This request has already been accepted.", e.getMessage());
+    }
+
+    @Test
+    void rejectFriendRequest_DeletedConcurrently_ReportsWithdrawn() {
+        when(friendshipRepository.findEdgeById(10L))
+                .thenReturn(Optional.of(new FriendGraph.Edge(10L, 1L, 2L, FriendshipStatus.PENDING)))
+                .thenReturn(Optional.empty());
+        when(friendshipRepository.deleteByIdAndStatus(10L, FriendshipStatus.PENDING)).thenReturn(0);
+
+        IllegalFriendshipStateException e = assertThrows(IllegalFriendshipStateException.class,
+                () -> friendshipService.rejectFriendRequest(10L, 2L));
+        assertEquals("This request was withdrawn or rejected and no longer exists.", e.getMessage());
+        verify(friendGraph, never()).removed(anyLong(), anyLong(), anyLong());
+    }
+
+    private static DataIntegrityViolationException violation(String sqlState) {
+        return new DataIntegrityViolationException("could not execute statement", new SQLException("violation", sqlState));
+    }
+}
@@ -0,0 +1,53 @@
+package se.jensen.johanna.socialapp.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import se.jensen.johanna.socialapp.model.Role;
+import se.jensen.johanna.socialapp.model.User;
+import se.jensen.johanna.socialapp.repository.UserRepository;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class MyUserDetailsServiceTest {
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final MyUserDetailsService userDetailsService = new MyUserDetailsService(userRepository);
+
+    @BeforeEach
+    void setUp() {
+        userDetailsService.init();
+    }
+
+    @Test
+    @DisplayName("Repeated logins are served from the cache until the user is evicted")
+    void loadUserByUsername_CachesUntilEvicted() {
+        User user = new User();
+        user.setUserId(1L);
+        user.setUsername("johanna");
+        user.setRole(Role.MEMBER);
+        when(userRepository.findByUsername("johanna")).thenReturn(Optional.of(user));
+
+        userDetailsService.loadUserByUsername("johanna");
+        userDetailsService.loadUserByUsername("johanna");
+        verify(userRepository, times(1)).findByUsername("johanna");
+
+        userDetailsService.evict("johanna");
+        assertEquals("johanna", userDetailsService.loadUserByUsername("johanna").getUsername());
+        verify(userRepository, times(2)).findByUsername("johanna");
+    }
+
+    @Test
+    @DisplayName("Unknown usernames are rejected and not cached")
+    void loadUserByUsername_UnknownUser_Throws() {
+        when(userRepository.findByUsername("nobody")).thenReturn(Optional.empty());
+
+        assertThrows(UsernameNotFoundException.class, () -> userDetailsService.loadUserByUsername("nobody"));
+        assertThrows(UsernameNotFoundException.class, () -> userDetailsService.loadUserByUsername("nobody"));
+        verify(userRepository, times(2)).findByUsername("nobody");
+    }
+}
@@ -6,14 +6,22 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import se.jensen.johanna.socialapp.dto.AvailabilityResponse;
 import se.jensen.johanna.socialapp.dto.RegisterUserRequest;
+import se.jensen.johanna.socialapp.exception.NotUniqueException;
+import se.jensen.johanna.socialapp.index.CredentialFilter;
+import se.jensen.johanna.socialapp.index.UserSummaryCache;
+import se.jensen.johanna.socialapp.index.UsernameIndex;
 import se.jensen.johanna.socialapp.mapper.UserMapper;
 import se.jensen.johanna.socialapp.model.Role;
 import se.jensen.johanna.socialapp.model.User;
 import se.jensen.johanna.socialapp.repository.UserRepository;
 
-import static org.junit.jupiter.api.Assertions.assertThrows;
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -27,6 +35,21 @@ public class UserServiceTest {
     @Mock
     private UserMapper userMapper;
 
+    @Mock
+    private UsernameIndex usernameIndex;
+
+    @Mock
+    private CredentialFilter credentialFilter;
+
+    @Mock
+    private UserSummaryCache userSummaryCache;
+
+    @Mock
+    private MyUserDetailsService userDetailsService;
+
+    @Mock
+    private RefreshTokenService refreshTokenService;
+
     @InjectMocks
     private  UserService userService;
 
@@ -66,6 +89,35 @@ public class UserServiceTest {
         verify(userRepository, never()).save(any(User.class));
     }
 
+    @Test
+    @DisplayName("Registration asks the database even when this instance's filter has not seen the username")
+    void testRegisterUser_UsernameTakenOnAnotherInstance(){
+        //Arrange
+        RegisterUserRequest request = new RegisterUserRequest("new@example.com", "Johanna", "1234", "1234");
+        when(userRepository.existsByUsername(request.username())).thenReturn(true);
+
+        //Act & Assert
+        assertThrows(NotUniqueException.class, () -> userService.registerUser(request));
+        verifyNoInteractions(credentialFilter);
+        verify(userRepository, never()).save(any(User.class));
+    }
+
+    @Test
+    @DisplayName("A unique violation on insert is reported as NotUniqueException")
+    void testRegisterUser_ConcurrentRegistration_ThrowsNotUnique(){
+        //Arrange
+        RegisterUserRequest request = new RegisterUserRequest("felicia@gmail.com", "Felicia", "12345678", "12345678");
+        User fakeUser = new User();
+        when(passwordEncoder.encode(request.password())).thenReturn("hashed_password");
+        when(userMapper.toUser(request, "hashed_password", Role.MEMBER)).thenReturn(fakeUser);
+        when(userRepository.save(fakeUser)).thenThrow(new DataIntegrityViolationException("could not execute statement",
+                new SQLException("duplicate key value violates unique constraint", "23505")));
+
+        //Act & Assert
+        assertThrows(NotUniqueException.class, () -> userService.registerUser(request));
+        verifyNoInteractions(usernameIndex, credentialFilter);
+    }
+
     @Test
     @DisplayName("Fail to create user when passwords do not match")
     void testCreateUser_PasswordsDoNotMatch(){
@@ -82,4 +134,17 @@ public class UserServiceTest {
         verify(userRepository, never()).save(any(User.class));
     }
 
+    @Test
+    @DisplayName("Availability check skips the database when the filter has never seen the value")
+    void checkAvailability_SkipsDatabase_WhenFilterMisses() {
+        when(credentialFilter.mightHaveUsername("newuser")).thenReturn(false);
+        when(credentialFilter.mightHaveEmail("taken@example.com")).thenReturn(true);
+        when(userRepository.existsByEmail("taken@example.com")).thenReturn(true);
+
+        AvailabilityResponse response = userService.checkAvailability("newuser", "taken@example.com");
+
+        assertTrue(response.usernameAvailable());
+        assertFalse(response.emailAvailable());
+        verify(userRepository, never()).existsByUsername(anyString());
+    }
 }
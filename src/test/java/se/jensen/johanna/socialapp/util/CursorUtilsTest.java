@@ -0,0 +1,60 @@
+package se.jensen.johanna.socialapp.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import se.jensen.johanna.socialapp.dto.CursorPage;
+import se.jensen.johanna.socialapp.exception.InvalidRequestException;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CursorUtilsTest {
+
+    private final CursorUtils cursorUtils = new CursorUtils();
+
+    @Test
+    @DisplayName("Encoded cursor decodes to the same createdAt and id")
+    void encodeDecode_RoundTrip() {
+        LocalDateTime createdAt = LocalDateTime.of(2025, 1, 2, 3, 4, 5, 6000);
+
+        CursorUtils.Cursor cursor = cursorUtils.decode(cursorUtils.encode(createdAt, 42L));
+
+        assertEquals(createdAt, cursor.createdAt());
+        assertEquals(42L, cursor.id());
+    }
+
+    @Test
+    @DisplayName("Missing cursor means first page")
+    void decode_ReturnsNull_WhenCursorIsBlank() {
+        assertNull(cursorUtils.decode(null));
+        assertNull(cursorUtils.decode(""));
+    }
+
+    @Test
+    @DisplayName("Malformed cursor is rejected")
+    void decode_Throws_WhenCursorIsMalformed() {
+        assertThrows(InvalidRequestException.class, () -> cursorUtils.decode("not a cursor!"));
+        assertThrows(InvalidRequestException.class, () -> cursorUtils.decode(cursorUtils.encode("x", 1L)).createdAt());
+    }
+
+    @Test
+    @DisplayName("Extra row sets next cursor and is trimmed from content")
+    void toPage_SetsNextCursor_WhenMoreRowsExist() {
+        CursorPage<Long> page = cursorUtils.toPage(List.of(1L, 2L, 3L), 2, cursorUtils::encode);
+
+        assertEquals(List.of(1L, 2L), page.content());
+        assertTrue(page.hasNext());
+        assertEquals(2L, cursorUtils.decode(page.nextCursor()).id());
+    }
+
+    @Test
+    @DisplayName("Last page has no next cursor")
+    void toPage_HasNoNextCursor_OnLastPage() {
+        CursorPage<Long> page = cursorUtils.toPage(List.of(1L, 2L), 2, cursorUtils::encode);
+
+        assertFalse(page.hasNext());
+        assertNull(page.nextCursor());
+    }
+}